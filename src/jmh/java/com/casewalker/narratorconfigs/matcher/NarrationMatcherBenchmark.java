@@ -0,0 +1,228 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks on building a {@link NarrationMatcher} from the bundled en_us.json and on matching messages against it,
+ * which is what {@code NarratorManagerMixinNCM2#createAcceptedNarrations} and
+ * {@code NarratorManagerMixinNCM2#narrationIsAccepted} spend their time on.
+ * <p>
+ * Messages are drawn from a fixed corpus mixing enabled translations with filled in placeholders, any translations
+ * with filled in placeholders (mostly rejected), translations cut short and garbled, and chat-like text.
+ *
+ * @author Case Walker
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NarrationMatcherBenchmark {
+
+    private static final String LANGUAGE_EXAMPLE = "/language_examples/en_us.json";
+    private static final int CORPUS_SIZE = 4096;
+
+    /**
+     * Prefixes from the example configuration in the README.
+     */
+    private static final List<String> README_PREFIXES = List.of(
+            "multiplayer.player.", "commands.message.display.", "chat.type.advancement.", "death.", "sleep.");
+
+    /**
+     * Prefixes enabling two wide-open groups of translations.
+     */
+    private static final List<String> WIDE_PREFIXES = List.of("death.", "commands.");
+
+    private static final List<String> REGULAR_EXPRESSIONS = List.of(
+            "^<\\w+> .*\\bhelp\\b.*$", "^\\[Server\\] .*", "^\\d+ players? online$");
+
+    /**
+     * Configuration to benchmark: "readme" and "wide" use the prefixes above without regular expressions, and
+     * "readme+regex" adds a few regular expressions to the README prefixes.
+     */
+    @Param({"readme", "wide", "readme+regex"})
+    public String config;
+
+    private Map<String, String> translations;
+    private List<String> enabledPrefixes;
+    private List<String> regularExpressions;
+    private NarrationMatcher matcher;
+    private NarrationMatcherBuilder builder;
+    private boolean sleepDisabled;
+    private Map<String, String> enabledTranslations;
+    private List<NarrationMatcher> enabledMatchers;
+    private List<Pattern> enabledPatterns;
+    private String[] corpus;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        try (Reader reader = new InputStreamReader(Objects.requireNonNull(
+                NarrationMatcherBenchmark.class.getResourceAsStream(LANGUAGE_EXAMPLE)), StandardCharsets.UTF_8)) {
+            translations = new Gson().fromJson(reader, new TypeToken<Map<String, String>>() {}.getType());
+        }
+        enabledPrefixes = config.startsWith("wide") ? WIDE_PREFIXES : README_PREFIXES;
+        regularExpressions = config.endsWith("+regex") ? REGULAR_EXPRESSIONS : List.of();
+        matcher = new NarrationMatcherBuilder().build(translations, enabledPrefixes, List.of(), regularExpressions,
+                NarrationMatcher.DEFAULT_CACHE_SIZE, false);
+        builder = new NarrationMatcherBuilder();
+        builder.build(translations, enabledPrefixes, List.of(), regularExpressions,
+                NarrationMatcher.DEFAULT_CACHE_SIZE, false);
+
+        final KeyPrefixFilter filter = new KeyPrefixFilter(enabledPrefixes, List.of());
+        final List<String> values = new ArrayList<>(translations.values());
+        enabledTranslations = translations.entrySet().stream()
+                .filter(entry -> filter.accepts(entry.getKey()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        final List<String> enabledValues = List.copyOf(enabledTranslations.values());
+        enabledMatchers = enabledTranslations.entrySet().stream()
+                .map(entry -> new NarrationMatcher(Map.of(entry.getKey(), entry.getValue()), List.of()))
+                .toList();
+        // the regular expressions translations used to be compiled into, one per translation
+        enabledPatterns = enabledValues.stream()
+                .map(value -> value.replaceAll("([]\\[.()^$*+?{}|\\\\])", "\\\\$1"))
+                .map(value -> value.replaceAll("%(\\d+\\\\[$])?[sd]", ".*"))
+                .map(value -> Pattern.compile("^" + value + ".*"))
+                .toList();
+        final Random random = new Random(0);
+        corpus = new String[CORPUS_SIZE];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            final String value = i % 4 == 0 ?
+                    enabledValues.get(random.nextInt(enabledValues.size())) : values.get(random.nextInt(values.size()));
+            corpus[i] = switch (i % 4) {
+                case 0, 1 -> value.replaceAll("%(\\d+\\$)?[sd]", "Player" + random.nextInt(100));
+                case 2 -> value.substring(0, random.nextInt(value.length() + 1)) + " #" + i;
+                default -> "<Player" + random.nextInt(100) + "> anyone want to help with the farm " + i;
+            };
+        }
+    }
+
+    @Benchmark
+    public NarrationMatcher buildFromScratch() {
+        return new NarrationMatcherBuilder().build(
+                translations, enabledPrefixes, List.of(), regularExpressions, NarrationMatcher.DEFAULT_CACHE_SIZE,
+                false);
+    }
+
+    /**
+     * Rebuild after toggling one disabled prefix, as when the configuration file is edited while playing.
+     */
+    @Benchmark
+    public NarrationMatcher rebuildWithChangedPrefix() {
+        sleepDisabled = !sleepDisabled;
+        return builder.build(translations, enabledPrefixes, sleepDisabled ? List.of("sleep.") : List.of(),
+                regularExpressions, NarrationMatcher.DEFAULT_CACHE_SIZE, false);
+    }
+
+    /**
+     * Parse each enabled translation into its literal segments, which is what a build from scratch does per
+     * translation before assembling the automaton.
+     */
+    @Benchmark
+    public List<TranslationFragment> parseTranslations() {
+        final List<TranslationFragment> fragments = new ArrayList<>(enabledTranslations.size());
+        for (final Map.Entry<String, String> entry : enabledTranslations.entrySet()) {
+            fragments.add(TranslationFragment.parse(entry.getKey(), entry.getValue()));
+        }
+        return fragments;
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return matcher.matches(nextMessage());
+    }
+
+    @Benchmark
+    public boolean matchesSegmented() {
+        return matcher.matches(SegmentedText.of(nextMessage()));
+    }
+
+    @Benchmark
+    public boolean matchesCached() {
+        return matcher.matchesCached(nextMessage());
+    }
+
+    /**
+     * Match the message against each enabled translation on its own, with one matcher per translation, as a baseline
+     * for the automaton.
+     */
+    @Benchmark
+    public boolean matchesEachTranslation() {
+        final String message = nextMessage();
+        for (final NarrationMatcher translationMatcher : enabledMatchers) {
+            if (translationMatcher.matches(message)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Match the message against each enabled translation's regular expression, as translations used to be matched.
+     */
+    @Benchmark
+    public boolean matchesEachRegularExpression() {
+        final String message = nextMessage();
+        for (final Pattern pattern : enabledPatterns) {
+            if (pattern.matcher(message).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String nextMessage() {
+        next = (next + 1) & (CORPUS_SIZE - 1);
+        return corpus[next];
+    }
+}
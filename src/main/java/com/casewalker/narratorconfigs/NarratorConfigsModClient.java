@@ -0,0 +1,78 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs;
+
+import com.casewalker.narratorconfigs.interfaces.NarrationMetricsProviderNCM2;
+import com.casewalker.narratorconfigs.pipeline.NarrationMetrics;
+import com.mojang.brigadier.context.CommandContext;
+import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback;
+import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import net.minecraft.text.Text;
+
+import static net.fabricmc.fabric.api.client.command.v2.ClientCommandManager.literal;
+
+/**
+ * Client Mod Initializer class for the Narrator Configs Mod, registering its client commands.
+ *
+ * @author Case Walker
+ */
+public class NarratorConfigsModClient implements ClientModInitializer {
+
+    @Override
+    public void onInitializeClient() {
+        ClientCommandRegistrationCallback.EVENT.register((dispatcher, registryAccess) -> dispatcher.register(
+                literal("narratorconfigs").then(literal("metrics")
+                        .executes(NarratorConfigsModClient::reportMetrics)
+                        .then(literal("reset").executes(NarratorConfigsModClient::resetMetrics)))));
+    }
+
+    /**
+     * Send the narration metrics to the chat, one line per kind of metric.
+     *
+     * @param context Context of the command
+     * @return The command result
+     */
+    private static int reportMetrics(final CommandContext<FabricClientCommandSource> context) {
+        final NarrationMetrics metrics = getMetrics(context.getSource());
+        metrics.report().forEach(line -> context.getSource().sendFeedback(Text.literal(line)));
+        return 1;
+    }
+
+    /**
+     * Start counting the narration metrics from zero.
+     *
+     * @param context Context of the command
+     * @return The command result
+     */
+    private static int resetMetrics(final CommandContext<FabricClientCommandSource> context) {
+        getMetrics(context.getSource()).reset();
+        context.getSource().sendFeedback(Text.literal("Narration metrics have been reset"));
+        return 1;
+    }
+
+    private static NarrationMetrics getMetrics(final FabricClientCommandSource source) {
+        return ((NarrationMetricsProviderNCM2) source.getClient().getNarratorManager()).getNarrationMetrics();
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Watcher for changes to configuration files, built on a {@link WatchService}. Editors often write a file in several
+ * steps (truncate, write, rename, touch), so events are coalesced: the callback only runs once no event has arrived for
+ * a whole debounce window, and only once per burst of events.
+ * <p>
+ * The callback runs on the watcher's own daemon thread, so it may take its time (such as to parse the configuration
+ * and build a new matcher) without holding up the game.
+ *
+ * @author Case Walker
+ */
+public class ConfigFileWatcher implements Closeable {
+
+    /**
+     * Default time in milliseconds to wait for further events before reacting to a change.
+     */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 250;
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Set<Path>> watchedFileNames = new HashMap<>();
+    private final Debouncer debouncer;
+    private final Runnable onChange;
+    private final Thread thread;
+    private volatile long changes;
+    private volatile long failures;
+    private volatile BiConsumer<String, Throwable> failureLog = (message, e) -> {};
+
+    /**
+     * Start watching the given files. Only the directories containing them are watched, so files which do not exist
+     * yet are noticed as soon as they are created, as long as their directory exists.
+     *
+     * @param files Files to watch
+     * @param debounceMillis Time in milliseconds to wait for further events before reacting to a change
+     * @param onChange Callback run once per burst of changes
+     * @param name Name of the watcher thread
+     * @throws IOException If the watch service cannot be created
+     */
+    public ConfigFileWatcher(
+            final Collection<Path> files,
+            final long debounceMillis,
+            final Runnable onChange,
+            final String name) throws IOException {
+
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.debouncer = new Debouncer(TimeUnit.MILLISECONDS.toNanos(Math.max(0, debounceMillis)));
+        this.onChange = onChange;
+        final Map<Path, Set<Path>> fileNamesByDirectory = new HashMap<>();
+        for (final Path file : files) {
+            final Path absolute = file.toAbsolutePath().normalize();
+            if (absolute.getParent() != null && Files.isDirectory(absolute.getParent())) {
+                fileNamesByDirectory.computeIfAbsent(absolute.getParent(), directory -> new HashSet<>())
+                        .add(absolute.getFileName());
+            }
+        }
+        for (final Map.Entry<Path, Set<Path>> entry : fileNamesByDirectory.entrySet()) {
+            final WatchKey key = entry.getKey().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            watchedFileNames.put(key, entry.getValue());
+        }
+
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop watching. A callback already running is allowed to finish.
+     *
+     * @throws IOException If the watch service cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * @param failureLog Consumer of a message and the exception whenever the callback fails
+     */
+    public void setFailureLog(final BiConsumer<String, Throwable> failureLog) {
+        this.failureLog = failureLog;
+    }
+
+    /**
+     * @return The number of times the callback was run
+     */
+    public long getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return The number of times the callback failed with an exception
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                final long timeout = debouncer.timeoutNanos(System.nanoTime());
+                final WatchKey key = timeout < 0 ?
+                        watchService.take() : watchService.poll(timeout, TimeUnit.NANOSECONDS);
+                if (key != null) {
+                    if (isRelevant(watchedFileNames.getOrDefault(key, Set.of()), key.pollEvents())) {
+                        debouncer.event(System.nanoTime());
+                    }
+                    key.reset();
+                }
+                if (debouncer.isDue(System.nanoTime())) {
+                    fireChange();
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ClosedWatchServiceException e) {
+            // closed, stop watching
+        }
+    }
+
+    /**
+     * Check whether any of the events concern a watched file (or may have been lost).
+     *
+     * @param fileNames Names of the watched files in the directory the events happened in
+     * @param events Events from the watch service
+     * @return Whether the events may have changed a watched file
+     */
+    static boolean isRelevant(final Set<Path> fileNames, final List<WatchEvent<?>> events) {
+        for (final WatchEvent<?> event : events) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileNames.contains((Path) event.context())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void fireChange() {
+        changes++;
+        try {
+            onChange.run();
+        } catch (final RuntimeException e) {
+            // keep watching, the next change may well fix whatever went wrong
+            failures++;
+            failureLog.accept("Could not react to the configuration file change", e);
+        }
+    }
+
+    /**
+     * Debounce window over a clock given by the caller: a change is due once no event has arrived for a whole window
+     * since the last one, and only once per burst of events.
+     */
+    static final class Debouncer {
+
+        private final long windowNanos;
+        // time at which the pending change is due, if no further events arrive before then
+        private long deadline;
+        private boolean pending;
+
+        /**
+         * @param windowNanos Time in nanoseconds to wait for further events before a change is due
+         */
+        Debouncer(final long windowNanos) {
+            this.windowNanos = windowNanos;
+        }
+
+        /**
+         * Record an event concerning a watched file, pushing the pending change back by a whole window.
+         *
+         * @param now Current time in nanoseconds, as in {@link System#nanoTime()}
+         */
+        void event(final long now) {
+            pending = true;
+            deadline = now + windowNanos;
+        }
+
+        /**
+         * @param now Current time in nanoseconds, as in {@link System#nanoTime()}
+         * @return The time in nanoseconds until the pending change is due, or -1 if no change is pending
+         */
+        long timeoutNanos(final long now) {
+            return pending ? Math.max(0, deadline - now) : -1;
+        }
+
+        /**
+         * Check whether the pending change is due, in which case it is no longer pending.
+         *
+         * @param now Current time in nanoseconds, as in {@link System#nanoTime()}
+         * @return Whether the pending change is due
+         */
+        boolean isDue(final long now) {
+            if (!pending || now - deadline < 0) {
+                return false;
+            }
+            pending = false;
+            return true;
+        }
+    }
+}
@@ -24,6 +24,12 @@
 package com.casewalker.narratorconfigs.config;
 
 import com.casewalker.modutils.config.AbstractConfig;
+import com.casewalker.narratorconfigs.matcher.NarrationMatcher;
+import com.casewalker.narratorconfigs.matcher.NarrationMatcherCache;
+import com.casewalker.narratorconfigs.pipeline.ChatRateLimiter;
+import com.casewalker.narratorconfigs.pipeline.NarrationDeduplicator;
+import com.casewalker.narratorconfigs.pipeline.NarrationPipeline;
+import com.casewalker.narratorconfigs.pipeline.NarrationScheduler;
 
 import java.nio.file.Path;
 import java.util.Collections;
@@ -47,6 +53,24 @@ public class NarratorConfigsModConfig extends AbstractConfig {
     private List<String> enabledPrefixes;
     private List<String> disabledPrefixes;
     private List<String> enabledRegularExpressions;
+    private Integer narrationCacheSize;
+    private Boolean lazyRegularExpressions;
+    private Integer narrationQueueSize;
+    private String narrationDropPolicy;
+    private Integer narrationDedupeWindowMillis;
+    private Double chatNarrationRate;
+    private Integer chatNarrationBurst;
+    private String chatOverflowPolicy;
+    private Integer metricsLogIntervalSeconds;
+    private Integer languageCacheSize;
+    private List<String> secondaryLanguages;
+    private List<String> highPriorityPrefixes;
+    private List<String> highPriorityRegularExpressions;
+    private List<String> lowPriorityPrefixes;
+    private List<String> lowPriorityRegularExpressions;
+    private Double narrationSpeechRate;
+    private Integer narrationLaneSize;
+    private Boolean interruptLowerPriority;
 
     @Override
     public List<Path> getDefaultConfigPaths() {
@@ -62,7 +86,35 @@ public class NarratorConfigsModConfig extends AbstractConfig {
         return chatEnabled == that.chatEnabled &&
                 Objects.equals(enabledPrefixes, that.enabledPrefixes) &&
                 Objects.equals(disabledPrefixes, that.disabledPrefixes) &&
-                Objects.equals(enabledRegularExpressions, that.enabledRegularExpressions);
+                Objects.equals(enabledRegularExpressions, that.enabledRegularExpressions) &&
+                Objects.equals(narrationCacheSize, that.narrationCacheSize) &&
+                Objects.equals(lazyRegularExpressions, that.lazyRegularExpressions) &&
+                Objects.equals(narrationQueueSize, that.narrationQueueSize) &&
+                Objects.equals(narrationDropPolicy, that.narrationDropPolicy) &&
+                Objects.equals(narrationDedupeWindowMillis, that.narrationDedupeWindowMillis) &&
+                Objects.equals(chatNarrationRate, that.chatNarrationRate) &&
+                Objects.equals(chatNarrationBurst, that.chatNarrationBurst) &&
+                Objects.equals(chatOverflowPolicy, that.chatOverflowPolicy) &&
+                Objects.equals(metricsLogIntervalSeconds, that.metricsLogIntervalSeconds) &&
+                Objects.equals(languageCacheSize, that.languageCacheSize) &&
+                Objects.equals(secondaryLanguages, that.secondaryLanguages) &&
+                Objects.equals(highPriorityPrefixes, that.highPriorityPrefixes) &&
+                Objects.equals(highPriorityRegularExpressions, that.highPriorityRegularExpressions) &&
+                Objects.equals(lowPriorityPrefixes, that.lowPriorityPrefixes) &&
+                Objects.equals(lowPriorityRegularExpressions, that.lowPriorityRegularExpressions) &&
+                Objects.equals(narrationSpeechRate, that.narrationSpeechRate) &&
+                Objects.equals(narrationLaneSize, that.narrationLaneSize) &&
+                Objects.equals(interruptLowerPriority, that.interruptLowerPriority);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(chatEnabled, enabledPrefixes, disabledPrefixes, enabledRegularExpressions,
+                narrationCacheSize, lazyRegularExpressions, narrationQueueSize, narrationDropPolicy,
+                narrationDedupeWindowMillis, chatNarrationRate, chatNarrationBurst, chatOverflowPolicy,
+                metricsLogIntervalSeconds, languageCacheSize, secondaryLanguages, highPriorityPrefixes,
+                highPriorityRegularExpressions, lowPriorityPrefixes, lowPriorityRegularExpressions, narrationSpeechRate,
+                narrationLaneSize, interruptLowerPriority);
     }
 
     /**
@@ -98,7 +150,46 @@ public class NarratorConfigsModConfig extends AbstractConfig {
             sb.append("Custom Regular Expressions include ");
             sb.append(enabledRegularExpressions);
         }
-        sb.append(".");
+        sb.append(". ");
+
+        sb.append("Up to ").append(getNarrationCacheSize()).append(" verdicts are cached, regular expressions are ");
+        sb.append(isLazyRegularExpressions() ? "compiled once needed" : "compiled right away");
+        sb.append(", up to ").append(getNarrationQueueSize()).append(" narrations are queued with drop policy ");
+        sb.append(getNarrationDropPolicy());
+        sb.append(", and repeats within ").append(getNarrationDedupeWindowMillis()).append(" ms are skipped. ");
+
+        if (getChatNarrationRate() == 0) {
+            sb.append("Chat is not rate limited. ");
+        } else {
+            sb.append("Chat is limited to ").append(getChatNarrationRate());
+            sb.append(" messages per second in bursts of ").append(getChatNarrationBurst()).append(" with overflow policy ").append(getChatOverflowPolicy());
+            sb.append(". ");
+        }
+
+        if (getMetricsLogIntervalSeconds() == 0) {
+            sb.append("Metrics are not logged");
+        } else {
+            sb.append("Metrics are logged every ").append(getMetricsLogIntervalSeconds()).append(" seconds");
+        }
+        sb.append(", accepted narrations are kept for ").append(getLanguageCacheSize()).append(" languages, and ");
+        if (getSecondaryLanguages().isEmpty()) {
+            sb.append("no secondary languages are built ahead of time. ");
+        } else {
+            sb.append("Secondary Languages include ").append(getSecondaryLanguages()).append(". ");
+        }
+
+        if (!hasNarrationPriorities()) {
+            sb.append("No narrations are prioritized.");
+        } else {
+            sb.append("High Priority Prefixes include ").append(getHighPriorityPrefixes());
+            sb.append(", High Priority Regular Expressions include ").append(getHighPriorityRegularExpressions());
+            sb.append(", Low Priority Prefixes include ").append(getLowPriorityPrefixes());
+            sb.append(", and Low Priority Regular Expressions include ").append(getLowPriorityRegularExpressions());
+            sb.append(". Speech is assumed to go at ").append(getNarrationSpeechRate());
+            sb.append(" characters per second, up to ").append(getNarrationLaneSize());
+            sb.append(" narrations wait in each lane, and lower priorities are ");
+            sb.append(isInterruptLowerPriority() ? "interrupted." : "not interrupted.");
+        }
 
         return sb.toString();
     }
@@ -120,6 +211,159 @@ public class NarratorConfigsModConfig extends AbstractConfig {
                 Collections.emptyList() : Collections.unmodifiableList(enabledRegularExpressions);
     }
 
+    /**
+     * @return The number of accept/reject verdicts to cache for repeated narrations, 0 disabling the cache
+     */
+    public int getNarrationCacheSize() {
+        return narrationCacheSize == null ? NarrationMatcher.DEFAULT_CACHE_SIZE : Math.max(0, narrationCacheSize);
+    }
+
+    /**
+     * @return Whether regular expressions are only compiled once they could first match a narration
+     */
+    public boolean isLazyRegularExpressions() {
+        return lazyRegularExpressions == null || lazyRegularExpressions;
+    }
+
+    /**
+     * @return The number of narrations which may wait to be classified off the client thread, 0 classifying them on
+     * the client thread right away
+     */
+    public int getNarrationQueueSize() {
+        return narrationQueueSize == null ? NarrationPipeline.DEFAULT_CAPACITY : Math.max(0, narrationQueueSize);
+    }
+
+    /**
+     * @return What to drop when the narration queue is full, dropping the oldest narration unless configured otherwise
+     */
+    public NarrationPipeline.DropPolicy getNarrationDropPolicy() {
+        return NarrationPipeline.DropPolicy.parse(narrationDropPolicy, NarrationPipeline.DropPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * @return The window in milliseconds within which an identical screen narration is not narrated again, 0 never
+     * suppressing narrations
+     */
+    public int getNarrationDedupeWindowMillis() {
+        return narrationDedupeWindowMillis == null ?
+                NarrationDeduplicator.DEFAULT_WINDOW_MILLIS : Math.max(0, narrationDedupeWindowMillis);
+    }
+
+    /**
+     * @return The number of chat messages narrated per second on average, 0 removing the limit
+     */
+    public double getChatNarrationRate() {
+        return chatNarrationRate == null ? ChatRateLimiter.DEFAULT_RATE : Math.max(0, chatNarrationRate);
+    }
+
+    /**
+     * @return The number of chat messages which may be narrated in a row before the rate limit applies
+     */
+    public int getChatNarrationBurst() {
+        return chatNarrationBurst == null ? ChatRateLimiter.DEFAULT_BURST : Math.max(1, chatNarrationBurst);
+    }
+
+    /**
+     * @return What to do with chat messages beyond the rate limit, summarizing them unless configured otherwise
+     */
+    public ChatRateLimiter.OverflowPolicy getChatOverflowPolicy() {
+        return ChatRateLimiter.OverflowPolicy.parse(chatOverflowPolicy, ChatRateLimiter.OverflowPolicy.SUMMARIZE);
+    }
+
+    /**
+     * @return The number of seconds between log lines reporting the narration metrics, 0 never logging them
+     */
+    public int getMetricsLogIntervalSeconds() {
+        return metricsLogIntervalSeconds == null ? 0 : Math.max(0, metricsLogIntervalSeconds);
+    }
+
+    /**
+     * @return The number of languages to keep built matchers for, so switching back to one is instant, 0 disabling
+     * the cache
+     */
+    public int getLanguageCacheSize() {
+        return languageCacheSize == null ? NarrationMatcherCache.DEFAULT_CAPACITY : Math.max(0, languageCacheSize);
+    }
+
+    /**
+     * @return Codes of languages (such as "fr_fr") to build matchers for in the background, before switching to them
+     */
+    public List<String> getSecondaryLanguages() {
+        return secondaryLanguages == null ?
+                Collections.emptyList() : Collections.unmodifiableList(secondaryLanguages);
+    }
+
+    /**
+     * @return Key prefixes of translations narrated before any others
+     */
+    public List<String> getHighPriorityPrefixes() {
+        return highPriorityPrefixes == null ?
+                Collections.emptyList() : Collections.unmodifiableList(highPriorityPrefixes);
+    }
+
+    /**
+     * @return Regular expressions of narrations narrated before any others
+     */
+    public List<String> getHighPriorityRegularExpressions() {
+        return highPriorityRegularExpressions == null ?
+                Collections.emptyList() : Collections.unmodifiableList(highPriorityRegularExpressions);
+    }
+
+    /**
+     * @return Key prefixes of translations narrated only when nothing else is waiting
+     */
+    public List<String> getLowPriorityPrefixes() {
+        return lowPriorityPrefixes == null ?
+                Collections.emptyList() : Collections.unmodifiableList(lowPriorityPrefixes);
+    }
+
+    /**
+     * @return Regular expressions of narrations narrated only when nothing else is waiting
+     */
+    public List<String> getLowPriorityRegularExpressions() {
+        return lowPriorityRegularExpressions == null ?
+                Collections.emptyList() : Collections.unmodifiableList(lowPriorityRegularExpressions);
+    }
+
+    /**
+     * @return Whether any narrations are given a high or low priority, without which the priority lanes stay off
+     */
+    public boolean hasNarrationPriorities() {
+        return !getHighPriorityPrefixes().isEmpty() || !getHighPriorityRegularExpressions().isEmpty() ||
+                !getLowPriorityPrefixes().isEmpty() || !getLowPriorityRegularExpressions().isEmpty();
+    }
+
+    /**
+     * @return The settings accepted narrations and their priorities are built from, equal for two configurations which
+     * build the same matcher and priorities out of the same translations
+     */
+    public FilterSettings getFilterSettings() {
+        return new FilterSettings(getEnabledPrefixes(), getDisabledPrefixes(), getEnabledRegularExpressions(),
+                getNarrationCacheSize(), isLazyRegularExpressions(), getHighPriorityPrefixes(),
+                getHighPriorityRegularExpressions(), getLowPriorityPrefixes(), getLowPriorityRegularExpressions());
+    }
+
+    /**
+     * @return The number of characters the narrator is assumed to speak per second, 0 turning the priority lanes off
+     */
+    public double getNarrationSpeechRate() {
+        return narrationSpeechRate == null ? NarrationScheduler.DEFAULT_SPEECH_RATE : Math.max(0, narrationSpeechRate);
+    }
+
+    /**
+     * @return The number of narrations which may wait in each priority lane
+     */
+    public int getNarrationLaneSize() {
+        return narrationLaneSize == null ? NarrationScheduler.DEFAULT_LANE_CAPACITY : Math.max(1, narrationLaneSize);
+    }
+
+    /**
+     * @return Whether a narration interrupts the narration of a lower priority being narrated
+     */
+    public boolean isInterruptLowerPriority() {
+        return interruptLowerPriority == null || interruptLowerPriority;
+    }
+
     public void setChatEnabled(final boolean chatEnabled) {
         this.chatEnabled = chatEnabled;
     }
@@ -135,4 +379,90 @@ public class NarratorConfigsModConfig extends AbstractConfig {
     public void setEnabledRegularExpressions(final List<String> enabledRegularExpressions) {
         this.enabledRegularExpressions = enabledRegularExpressions;
     }
+
+    public void setNarrationCacheSize(final Integer narrationCacheSize) {
+        this.narrationCacheSize = narrationCacheSize;
+    }
+
+    public void setLazyRegularExpressions(final Boolean lazyRegularExpressions) {
+        this.lazyRegularExpressions = lazyRegularExpressions;
+    }
+
+    public void setNarrationQueueSize(final Integer narrationQueueSize) {
+        this.narrationQueueSize = narrationQueueSize;
+    }
+
+    public void setNarrationDropPolicy(final String narrationDropPolicy) {
+        this.narrationDropPolicy = narrationDropPolicy;
+    }
+
+    public void setNarrationDedupeWindowMillis(final Integer narrationDedupeWindowMillis) {
+        this.narrationDedupeWindowMillis = narrationDedupeWindowMillis;
+    }
+
+    public void setChatNarrationRate(final Double chatNarrationRate) {
+        this.chatNarrationRate = chatNarrationRate;
+    }
+
+    public void setChatNarrationBurst(final Integer chatNarrationBurst) {
+        this.chatNarrationBurst = chatNarrationBurst;
+    }
+
+    public void setChatOverflowPolicy(final String chatOverflowPolicy) {
+        this.chatOverflowPolicy = chatOverflowPolicy;
+    }
+
+    public void setMetricsLogIntervalSeconds(final Integer metricsLogIntervalSeconds) {
+        this.metricsLogIntervalSeconds = metricsLogIntervalSeconds;
+    }
+
+    public void setLanguageCacheSize(final Integer languageCacheSize) {
+        this.languageCacheSize = languageCacheSize;
+    }
+
+    public void setSecondaryLanguages(final List<String> secondaryLanguages) {
+        this.secondaryLanguages = secondaryLanguages;
+    }
+
+    public void setHighPriorityPrefixes(final List<String> highPriorityPrefixes) {
+        this.highPriorityPrefixes = highPriorityPrefixes;
+    }
+
+    public void setHighPriorityRegularExpressions(final List<String> highPriorityRegularExpressions) {
+        this.highPriorityRegularExpressions = highPriorityRegularExpressions;
+    }
+
+    public void setLowPriorityPrefixes(final List<String> lowPriorityPrefixes) {
+        this.lowPriorityPrefixes = lowPriorityPrefixes;
+    }
+
+    public void setLowPriorityRegularExpressions(final List<String> lowPriorityRegularExpressions) {
+        this.lowPriorityRegularExpressions = lowPriorityRegularExpressions;
+    }
+
+    public void setNarrationSpeechRate(final Double narrationSpeechRate) {
+        this.narrationSpeechRate = narrationSpeechRate;
+    }
+
+    public void setNarrationLaneSize(final Integer narrationLaneSize) {
+        this.narrationLaneSize = narrationLaneSize;
+    }
+
+    public void setInterruptLowerPriority(final Boolean interruptLowerPriority) {
+        this.interruptLowerPriority = interruptLowerPriority;
+    }
+
+    /**
+     * Settings accepted narrations and their priorities are built from, see {@link #getFilterSettings()}.
+     */
+    public record FilterSettings(
+            List<String> enabledPrefixes,
+            List<String> disabledPrefixes,
+            List<String> enabledRegularExpressions,
+            int narrationCacheSize,
+            boolean lazyRegularExpressions,
+            List<String> highPriorityPrefixes,
+            List<String> highPriorityRegularExpressions,
+            List<String> lowPriorityPrefixes,
+            List<String> lowPriorityRegularExpressions) {}
 }
@@ -0,0 +1,45 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.interfaces;
+
+import java.util.Map;
+
+/**
+ * Interface to be used with the {@link net.minecraft.client.util.NarratorManager} to let it know whenever translations
+ * have been (re)loaded, such as on startup, on a language change, or on a resource pack reload.
+ *
+ * @author Case Walker
+ */
+public interface TranslationsReloadableNCM2 {
+
+    /**
+     * Allow the {@link net.minecraft.client.resource.language.TranslationStorage} to hand over newly loaded
+     * translations as soon as they are ready.
+     *
+     * @param language Code of the language the translations are in, such as "en_us"
+     * @param translations Map of keys and values such as in en_us.json
+     */
+    void reloadTranslations(final String language, final Map<String, String> translations);
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.function.IntPredicate;
+
+/**
+ * Aho-Corasick automaton mapping literals to integer IDs. A single scan of a message visits the ID of every literal
+ * occurring anywhere in the message.
+ * <p>
+ * Literals are registered with {@link #add(String, int)}, then {@link #build()} must be called once before scanning.
+ *
+ * @author Case Walker
+ */
+final class AhoCorasick {
+
+    private final TrieNode root = new TrieNode();
+    private boolean empty = true;
+
+    /**
+     * Register an ID under a non-empty literal.
+     *
+     * @param literal Literal text to find
+     * @param id ID to register
+     */
+    void add(final String literal, final int id) {
+        if (literal.isEmpty()) {
+            throw new IllegalArgumentException("Aho-Corasick literals must not be empty");
+        }
+        root.add(literal, id);
+        empty = false;
+    }
+
+    /**
+     * Compute the failure and output links, breadth first so every node's links are known before its children's.
+     */
+    void build() {
+        final Queue<TrieNode> queue = new ArrayDeque<>();
+        for (int i = 0; i < root.size(); i++) {
+            final TrieNode child = root.childAt(i);
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final TrieNode node = queue.remove();
+            for (int i = 0; i < node.size(); i++) {
+                final char c = node.key(i);
+                final TrieNode child = node.childAt(i);
+                TrieNode fail = node.fail;
+                while (fail != root && fail.child(c) == null) {
+                    fail = fail.fail;
+                }
+                final TrieNode target = fail.child(c);
+                child.fail = target != null ? target : root;
+                child.output = child.fail.ids().length > 0 ? child.fail : child.fail.output;
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * @return Whether no literals were registered
+     */
+    boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Visit the IDs of the literals occurring in the string, in order of where they end, until one is accepted. An ID
+     * is visited once per occurrence of its literal. IDs sharing a literal are visited in the order they were added,
+     * except that an accepted ID moves one place forward, so that IDs which are accepted most often end up visited
+     * first.
+     *
+     * @param string String to scan
+     * @param predicate Test to run on each candidate ID
+     * @return Whether the predicate accepted any candidate
+     */
+    boolean anyMatch(final String string, final IntPredicate predicate) {
+        TrieNode node = root;
+        for (int i = 0; i < string.length(); i++) {
+            final char c = string.charAt(i);
+            TrieNode next = node.child(c);
+            while (next == null && node != root) {
+                node = node.fail;
+                next = node.child(c);
+            }
+            node = next != null ? next : root;
+            for (TrieNode match = node.ids().length > 0 ? node : node.output; match != null; match = match.output) {
+                final int[] ids = match.ids();
+                for (int j = 0; j < ids.length; j++) {
+                    if (predicate.test(ids[j])) {
+                        match.promote(ids, j);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
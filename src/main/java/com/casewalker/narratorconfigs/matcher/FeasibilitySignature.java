@@ -0,0 +1,68 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+/**
+ * What a message must at least have for a regular expression to possibly match it: a minimum length, and characters
+ * it must contain, folded into a 64-bit set where each character sets bit <code>c % 64</code>. The same set is built
+ * once per message with {@link #characterBits(String)}, so ruling a regular expression out costs a comparison and a
+ * couple of bitwise operations instead of running it.
+ * <p>
+ * Characters sharing a bit can make a signature admit a message it could never match, but never the reverse.
+ *
+ * @param minimumLength Length any matching message has at least
+ * @param requiredCharacters Bits of the characters any matching message contains
+ * @author Case Walker
+ */
+record FeasibilitySignature(int minimumLength, long requiredCharacters) {
+
+    /**
+     * Signature ruling nothing out, for regular expressions which could not be analyzed.
+     */
+    static final FeasibilitySignature NONE = new FeasibilitySignature(0, 0);
+
+    /**
+     * Fold the characters of a string into a 64-bit set.
+     *
+     * @param string String whose characters to fold
+     * @return The bits of all characters in the string
+     */
+    static long characterBits(final String string) {
+        long bits = 0;
+        for (int i = 0; i < string.length(); i++) {
+            // shifting a long only uses the low six bits of the distance
+            bits |= 1L << string.charAt(i);
+        }
+        return bits;
+    }
+
+    /**
+     * @param length Length of the message
+     * @param characters Character bits of the message, from {@link #characterBits(String)}
+     * @return Whether a message with this length and these characters could possibly match
+     */
+    boolean admits(final int length, final long characters) {
+        return length >= minimumLength && (requiredCharacters & ~characters) == 0;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * On-disk store of the hit counts of the configured regular expressions, so that a new session starts out trying the
+ * regular expressions in the order the previous sessions learned.
+ *
+ * @author Case Walker
+ */
+final class HitCountStore {
+
+    private HitCountStore() {}
+
+    /**
+     * Read the hit counts of regular expressions.
+     *
+     * @param file File to read
+     * @return The hit count of each regular expression, which is empty if the file does not exist
+     * @throws IOException If the file cannot be read
+     */
+    static Map<String, Long> load(final Path file) throws IOException {
+        final Map<String, Long> hitCounts = new HashMap<>();
+        if (!Files.isRegularFile(file)) {
+            return hitCounts;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            for (int i = input.readInt(); i > 0; i--) {
+                hitCounts.put(input.readUTF(), input.readLong());
+            }
+        }
+        return hitCounts;
+    }
+
+    /**
+     * Write the hit counts of regular expressions, replacing the file only once it is completely written.
+     *
+     * @param file File to write
+     * @param hitCounts The hit count of each regular expression
+     * @throws IOException If the file cannot be written
+     */
+    static void save(final Path file, final Map<String, Long> hitCounts) throws IOException {
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream output =
+                     new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            output.writeInt(hitCounts.size());
+            for (final Map.Entry<String, Long> entry : hitCounts.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeLong(entry.getValue());
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
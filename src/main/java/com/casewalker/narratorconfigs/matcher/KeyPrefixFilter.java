@@ -0,0 +1,62 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import java.util.Collection;
+
+/**
+ * Filter on translation keys built from the configured enabled and disabled prefixes. The prefixes are compiled into
+ * one {@link LiteralPrefixTrie}, so each key costs a single walk no matter how many prefixes are configured.
+ * <p>
+ * The longest configured prefix of a key decides: a disabled prefix overrides any shorter enabled prefix, and a more
+ * specific enabled prefix can re-enable keys under a disabled one. A prefix configured as both enabled and disabled is
+ * disabled.
+ *
+ * @author Case Walker
+ */
+public class KeyPrefixFilter {
+
+    private static final int DISABLED = 0;
+    private static final int ENABLED = 1;
+
+    private final LiteralPrefixTrie prefixes = new LiteralPrefixTrie();
+
+    /**
+     * @param enabledPrefixes Key prefixes to enable
+     * @param disabledPrefixes Key prefixes to disable
+     */
+    public KeyPrefixFilter(final Collection<String> enabledPrefixes, final Collection<String> disabledPrefixes) {
+        // disabled prefixes are added last so they win over identical enabled prefixes
+        enabledPrefixes.forEach(prefix -> prefixes.add(prefix, ENABLED));
+        disabledPrefixes.forEach(prefix -> prefixes.add(prefix, DISABLED));
+    }
+
+    /**
+     * @param key Translation key
+     * @return Whether the longest configured prefix of the key is enabled
+     */
+    public boolean accepts(final String key) {
+        return prefixes.longestMatch(key) == ENABLED;
+    }
+}
@@ -0,0 +1,558 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Linear-time engine for the regular subset of {@link java.util.regex.Pattern} syntax, so that a configured regular
+ * expression such as <code>(.*a)*</code> cannot take exponential time on a long message the way a backtracking engine
+ * can. The regular expression is compiled into a Thompson automaton which is simulated over all of its states at once,
+ * taking time proportional to the message length times the automaton size, whatever the regular expression.
+ * <p>
+ * The subset is: literal and escaped characters, "." and "\d", "\s", "\w" (and their negations) with their default
+ * (ASCII) meanings, character classes of characters, ranges and those escapes, capturing and non-capturing groups,
+ * alternation, greedy and lazy quantifiers, a leading "^" and a trailing "$". Anything else (back-references,
+ * lookaround, flags, possessive quantifiers, other escapes, nested classes) is left to {@link java.util.regex}.
+ * <p>
+ * The automaton works on chars where {@link java.util.regex.Pattern} works on code points, so it only agrees with it on
+ * messages without surrogates; {@link #matches(CharSequence)} must not be given any others.
+ *
+ * @author Case Walker
+ */
+final class LinearRegex {
+
+    /**
+     * Largest automaton to build, since bounded repetition copies its operand once per repetition.
+     */
+    static final int MAX_STATES = 10_000;
+
+    private static final int[] DIGIT = {'0', '9'};
+    private static final int[] SPACE = {'\t', '\r', ' ', ' '};
+    private static final int[] WORD = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+    private static final int[] LINE_TERMINATORS = {'\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029'};
+
+    /**
+     * Sorted, non-overlapping inclusive character ranges each state consumes, or null for states which consume
+     * nothing: a split when it has a second successor, the accepting state otherwise.
+     */
+    private final int[][] ranges;
+    private final int[] next;
+    private final int[] alternative;
+    private final int start;
+
+    private LinearRegex(final List<int[]> ranges, final List<Integer> next, final List<Integer> alternative,
+                        final int start) {
+        this.ranges = ranges.toArray(new int[0][]);
+        this.next = next.stream().mapToInt(Integer::intValue).toArray();
+        this.alternative = alternative.stream().mapToInt(Integer::intValue).toArray();
+        this.start = start;
+    }
+
+    /**
+     * Compile a regular expression, which must already be known to be valid, if it is within the supported subset.
+     *
+     * @param regex Valid regular expression
+     * @return The compiled regular expression, or null if it is outside the supported subset
+     */
+    static LinearRegex compile(final String regex) {
+        try {
+            final Parser parser = new Parser(regex);
+            final Node node = parser.parseAlternation();
+            if (parser.position != regex.length()) {
+                return null;
+            }
+            final Builder builder = new Builder();
+            final int accept = builder.add(null, -1, -1);
+            final int start = builder.emit(node, accept);
+            return new LinearRegex(builder.ranges, builder.next, builder.alternative, start);
+        } catch (final UnsupportedSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return The number of automaton states
+     */
+    int size() {
+        return ranges.length;
+    }
+
+    /**
+     * Check whether the regular expression matches the whole message.
+     *
+     * @param string Message without any surrogates
+     * @return Whether the regular expression matches
+     */
+    boolean matches(final CharSequence string) {
+        return matches(string, null);
+    }
+
+    /**
+     * Same as {@link #matches(CharSequence)}, also counting the states the automaton goes through: every state it is
+     * in is visited once per character, so there are never more than the number of states times one more than the
+     * length of the message.
+     *
+     * @param string Message without any surrogates
+     * @param visits Array whose first element is increased by the number of states visited, or null not to count them
+     * @return Whether the regular expression matches
+     */
+    boolean matches(final CharSequence string, final long[] visits) {
+        // each step's states, deduplicated by marking them with the step that added them
+        final int[] marks = new int[ranges.length];
+        final int[] stack = new int[ranges.length * 2 + 1];
+        int[] current = new int[ranges.length];
+        int[] following = new int[ranges.length];
+        int step = 1;
+        int count = addClosure(start, current, 0, marks, step, stack);
+        for (int i = 0; i < string.length() && count > 0; i++) {
+            if (visits != null) {
+                visits[0] += count;
+            }
+            final char c = string.charAt(i);
+            step++;
+            int followingCount = 0;
+            for (int j = 0; j < count; j++) {
+                final int state = current[j];
+                if (ranges[state] != null && contains(ranges[state], c)) {
+                    followingCount = addClosure(next[state], following, followingCount, marks, step, stack);
+                }
+            }
+            final int[] swap = current;
+            current = following;
+            following = swap;
+            count = followingCount;
+        }
+        if (visits != null) {
+            visits[0] += count;
+        }
+        for (int j = 0; j < count; j++) {
+            final int state = current[j];
+            if (ranges[state] == null && next[state] < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add a state and every state reachable from it without consuming a character to a step's states, keeping only
+     * the states which consume characters or accept.
+     *
+     * @return The new number of states in the step
+     */
+    private int addClosure(final int state, final int[] states, final int count, final int[] marks, final int step,
+                           final int[] stack) {
+        int added = count;
+        int depth = 0;
+        stack[depth++] = state;
+        while (depth > 0) {
+            final int s = stack[--depth];
+            if (marks[s] == step) {
+                continue;
+            }
+            marks[s] = step;
+            if (ranges[s] == null && next[s] >= 0) {
+                // each split is only expanded once per step, so the stack holds at most two states per split
+                if (alternative[s] >= 0 && marks[alternative[s]] != step) {
+                    stack[depth++] = alternative[s];
+                }
+                if (marks[next[s]] != step) {
+                    stack[depth++] = next[s];
+                }
+            } else {
+                states[added++] = s;
+            }
+        }
+        return added;
+    }
+
+    private static boolean contains(final int[] ranges, final char c) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (c < ranges[i]) {
+                return false;
+            }
+            if (c <= ranges[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sort and merge character ranges.
+     */
+    private static int[] normalize(final List<int[]> pairs) {
+        pairs.sort((a, b) -> Integer.compare(a[0], b[0]));
+        final List<int[]> merged = new ArrayList<>();
+        for (final int[] pair : pairs) {
+            final int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && pair[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], pair[1]);
+            } else {
+                merged.add(new int[] {pair[0], pair[1]});
+            }
+        }
+        final int[] ranges = new int[merged.size() * 2];
+        for (int i = 0; i < merged.size(); i++) {
+            ranges[i * 2] = merged.get(i)[0];
+            ranges[i * 2 + 1] = merged.get(i)[1];
+        }
+        return ranges;
+    }
+
+    /**
+     * @return The complement of normalized ranges within all chars
+     */
+    private static int[] complement(final int[] ranges) {
+        final List<int[]> pairs = new ArrayList<>();
+        int from = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > from) {
+                pairs.add(new int[] {from, ranges[i] - 1});
+            }
+            from = ranges[i + 1] + 1;
+        }
+        if (from <= Character.MAX_VALUE) {
+            pairs.add(new int[] {from, Character.MAX_VALUE});
+        }
+        return normalize(pairs);
+    }
+
+    private static void addPairs(final List<int[]> pairs, final int[] ranges) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            pairs.add(new int[] {ranges[i], ranges[i + 1]});
+        }
+    }
+
+    /**
+     * Parsed regular expression.
+     */
+    private sealed interface Node permits Chars, Sequence, Choice, Repeat {}
+
+    private record Chars(int[] ranges) implements Node {}
+
+    private record Sequence(List<Node> nodes) implements Node {}
+
+    private record Choice(List<Node> alternatives) implements Node {}
+
+    /**
+     * @param max Maximum number of repetitions, or -1 if unbounded
+     */
+    private record Repeat(Node node, int min, int max) implements Node {}
+
+    /**
+     * Thrown by the parser and builder when the regular expression cannot be compiled into the automaton.
+     */
+    private static final class UnsupportedSyntaxException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedSyntaxException() {
+            // only used for control flow, so there is no message, cause or (costly) stack trace to fill in
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Recursive descent parser for the supported subset, giving up on anything else.
+     */
+    private static final class Parser {
+        private final String regex;
+        private int position;
+
+        Parser(final String regex) {
+            this.regex = regex;
+        }
+
+        Node parseAlternation() throws UnsupportedSyntaxException {
+            final List<Node> alternatives = new ArrayList<>();
+            alternatives.add(parseSequence());
+            while (position < regex.length() && regex.charAt(position) == '|') {
+                position++;
+                alternatives.add(parseSequence());
+            }
+            return alternatives.size() == 1 ? alternatives.get(0) : new Choice(alternatives);
+        }
+
+        private Node parseSequence() throws UnsupportedSyntaxException {
+            final List<Node> nodes = new ArrayList<>();
+            while (position < regex.length() && regex.charAt(position) != '|' && regex.charAt(position) != ')') {
+                final char c = regex.charAt(position);
+                if (c == '^' && position == 0) {
+                    // matching the whole message, a leading anchor always holds
+                    position++;
+                } else if (c == '$' && position == regex.length() - 1) {
+                    // and so does a trailing one, since nothing may follow it
+                    position++;
+                } else {
+                    nodes.add(parseRepeat());
+                }
+            }
+            return nodes.size() == 1 ? nodes.get(0) : new Sequence(nodes);
+        }
+
+        private Node parseRepeat() throws UnsupportedSyntaxException {
+            final Node atom = parseAtom();
+            if (position >= regex.length()) {
+                return atom;
+            }
+            final int min;
+            final int max;
+            switch (regex.charAt(position)) {
+                case '?' -> {
+                    min = 0;
+                    max = 1;
+                    position++;
+                }
+                case '*' -> {
+                    min = 0;
+                    max = -1;
+                    position++;
+                }
+                case '+' -> {
+                    min = 1;
+                    max = -1;
+                    position++;
+                }
+                case '{' -> {
+                    final int end = regex.indexOf('}', position);
+                    if (end < 0) {
+                        throw new UnsupportedSyntaxException();
+                    }
+                    final String[] bounds = regex.substring(position + 1, end).split(",", -1);
+                    min = parseBound(bounds[0]);
+                    max = bounds.length == 1 ? min : bounds[1].isEmpty() ? -1 : parseBound(bounds[1]);
+                    if (bounds.length > 2 || (max >= 0 && max < min)) {
+                        throw new UnsupportedSyntaxException();
+                    }
+                    position = end + 1;
+                }
+                default -> {
+                    return atom;
+                }
+            }
+            if (position < regex.length() && regex.charAt(position) == '?') {
+                // a lazy quantifier matches the same whole messages as a greedy one
+                position++;
+            }
+            if (position < regex.length() && "?*+{".indexOf(regex.charAt(position)) >= 0) {
+                // possessive quantifiers can reject what backtracking would match
+                throw new UnsupportedSyntaxException();
+            }
+            return new Repeat(atom, min, max);
+        }
+
+        private static int parseBound(final String bound) throws UnsupportedSyntaxException {
+            if (bound.isEmpty() || bound.length() > 5 || !bound.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                throw new UnsupportedSyntaxException();
+            }
+            return Integer.parseInt(bound);
+        }
+
+        private Node parseAtom() throws UnsupportedSyntaxException {
+            final char c = regex.charAt(position);
+            switch (c) {
+                case '(' -> {
+                    position++;
+                    if (regex.startsWith("?:", position)) {
+                        position += 2;
+                    } else if (position < regex.length() && regex.charAt(position) == '?') {
+                        // lookaround, named groups, flags and atomic groups
+                        throw new UnsupportedSyntaxException();
+                    }
+                    final Node group = parseAlternation();
+                    if (position >= regex.length() || regex.charAt(position) != ')') {
+                        throw new UnsupportedSyntaxException();
+                    }
+                    position++;
+                    return group;
+                }
+                case '[' -> {
+                    return parseClass();
+                }
+                case '.' -> {
+                    position++;
+                    return new Chars(complement(LINE_TERMINATORS));
+                }
+                case '\\' -> {
+                    final int[] escaped = parseEscape();
+                    return new Chars(escaped);
+                }
+                case '^', '$', '*', '+', '?', '{', '}', ']', ')' -> throw new UnsupportedSyntaxException();
+                default -> {
+                    position++;
+                    return new Chars(single(c));
+                }
+            }
+        }
+
+        /**
+         * Parse an escape at the current position, as outside or inside a character class.
+         */
+        private int[] parseEscape() throws UnsupportedSyntaxException {
+            if (position + 1 >= regex.length()) {
+                throw new UnsupportedSyntaxException();
+            }
+            final char escaped = regex.charAt(position + 1);
+            position += 2;
+            return switch (escaped) {
+                case 'd' -> DIGIT;
+                case 'D' -> complement(DIGIT);
+                case 's' -> SPACE;
+                case 'S' -> complement(SPACE);
+                case 'w' -> WORD;
+                case 'W' -> complement(WORD);
+                case 't' -> single('\t');
+                case 'n' -> single('\n');
+                case 'r' -> single('\r');
+                case 'f' -> single('\f');
+                case 'a' -> single('\u0007');
+                case 'e' -> single('\u001B');
+                default -> {
+                    if (Character.isLetterOrDigit(escaped)) {
+                        // anchors, back-references, quoting, properties and escapes taking arguments
+                        throw new UnsupportedSyntaxException();
+                    }
+                    yield single(escaped);
+                }
+            };
+        }
+
+        private Node parseClass() throws UnsupportedSyntaxException {
+            position++;
+            final boolean negated = position < regex.length() && regex.charAt(position) == '^';
+            if (negated) {
+                position++;
+            }
+            final List<int[]> pairs = new ArrayList<>();
+            boolean first = true;
+            while (true) {
+                if (position >= regex.length()) {
+                    throw new UnsupportedSyntaxException();
+                }
+                final char c = regex.charAt(position);
+                if (c == ']' && !first) {
+                    position++;
+                    break;
+                }
+                if (c == ']' || c == '[' || regex.startsWith("&&", position)) {
+                    // leading brackets, nested classes and intersections
+                    throw new UnsupportedSyntaxException();
+                }
+                first = false;
+                final int[] from = parseClassMember();
+                if (position + 1 < regex.length() && regex.charAt(position) == '-' &&
+                        regex.charAt(position + 1) != ']') {
+                    position++;
+                    final int[] to = parseClassMember();
+                    if (!isSingle(from) || !isSingle(to) || to[0] < from[0]) {
+                        throw new UnsupportedSyntaxException();
+                    }
+                    pairs.add(new int[] {from[0], to[0]});
+                } else {
+                    addPairs(pairs, from);
+                }
+            }
+            final int[] ranges = normalize(pairs);
+            return new Chars(negated ? complement(ranges) : ranges);
+        }
+
+        private int[] parseClassMember() throws UnsupportedSyntaxException {
+            return regex.charAt(position) == '\\' ? parseEscape() : single(regex.charAt(position++));
+        }
+
+        private static boolean isSingle(final int[] ranges) {
+            return ranges.length == 2 && ranges[0] == ranges[1];
+        }
+
+        private static int[] single(final char c) throws UnsupportedSyntaxException {
+            if (Character.isSurrogate(c)) {
+                throw new UnsupportedSyntaxException();
+            }
+            return new int[] {c, c};
+        }
+    }
+
+    /**
+     * Builder of the automaton, emitting each node in front of the state it continues to.
+     */
+    private static final class Builder {
+        private final List<int[]> ranges = new ArrayList<>();
+        private final List<Integer> next = new ArrayList<>();
+        private final List<Integer> alternative = new ArrayList<>();
+
+        int add(final int[] stateRanges, final int stateNext, final int stateAlternative)
+                throws UnsupportedSyntaxException {
+            if (ranges.size() >= MAX_STATES) {
+                throw new UnsupportedSyntaxException();
+            }
+            ranges.add(stateRanges);
+            next.add(stateNext);
+            alternative.add(stateAlternative);
+            return ranges.size() - 1;
+        }
+
+        /**
+         * @param node Node to emit
+         * @param continuation State to continue to once the node is matched
+         * @return The state starting the node
+         */
+        int emit(final Node node, final int continuation) throws UnsupportedSyntaxException {
+            if (node instanceof Chars chars) {
+                return add(chars.ranges(), continuation, -1);
+            }
+            if (node instanceof Sequence sequence) {
+                int state = continuation;
+                for (int i = sequence.nodes().size() - 1; i >= 0; i--) {
+                    state = emit(sequence.nodes().get(i), state);
+                }
+                return state;
+            }
+            if (node instanceof Choice choice) {
+                int state = emit(choice.alternatives().get(choice.alternatives().size() - 1), continuation);
+                for (int i = choice.alternatives().size() - 2; i >= 0; i--) {
+                    state = add(null, emit(choice.alternatives().get(i), continuation), state);
+                }
+                return state;
+            }
+            final Repeat repeat = (Repeat) node;
+            int state = continuation;
+            if (repeat.max() < 0) {
+                // a split looping back through the node, whose first successor is only known once it is emitted
+                final int loop = add(null, -1, continuation);
+                next.set(loop, emit(repeat.node(), loop));
+                state = loop;
+            } else {
+                for (int i = repeat.min(); i < repeat.max(); i++) {
+                    state = add(null, emit(repeat.node(), state), continuation);
+                }
+            }
+            for (int i = 0; i < repeat.min(); i++) {
+                state = emit(repeat.node(), state);
+            }
+            return state;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Character trie mapping literal prefixes to integer IDs. Walking a message through the trie visits exactly the IDs
+ * whose prefix the message starts with, stopping as soon as the message leaves the trie.
+ *
+ * @author Case Walker
+ */
+final class LiteralPrefixTrie {
+
+    private final TrieNode root = new TrieNode();
+
+    /**
+     * Register an ID under a literal prefix. An empty prefix makes the ID a candidate for every message.
+     *
+     * @param prefix Literal text the message must start with
+     * @param id ID to register
+     */
+    void add(final String prefix, final int id) {
+        root.add(prefix, id);
+    }
+
+    /**
+     * Visit the IDs whose prefix the string starts with, shortest prefix first, until one is accepted. IDs sharing a
+     * prefix are visited in the order they were added, except that an accepted ID moves one place forward, so that IDs
+     * which are accepted most often end up visited first.
+     *
+     * @param string String to walk through the trie
+     * @param predicate Test to run on each candidate ID
+     * @return Whether the predicate accepted any candidate
+     */
+    boolean anyMatch(final String string, final IntPredicate predicate) {
+        TrieNode node = root;
+        int i = 0;
+        while (true) {
+            final int[] ids = node.ids();
+            for (int j = 0; j < ids.length; j++) {
+                if (predicate.test(ids[j])) {
+                    node.promote(ids, j);
+                    return true;
+                }
+            }
+            if (i == string.length()) {
+                return false;
+            }
+            node = node.child(string.charAt(i++));
+            if (node == null) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Find the ID registered last under the longest prefix of the string.
+     *
+     * @param string String to walk through the trie
+     * @return The ID, or -1 if no registered prefix is a prefix of the string
+     */
+    int longestMatch(final String string) {
+        TrieNode node = root;
+        int match = -1;
+        int i = 0;
+        while (node != null) {
+            final int[] ids = node.ids();
+            if (ids.length > 0) {
+                match = ids[ids.length - 1];
+            }
+            node = i < string.length() ? node.child(string.charAt(i++)) : null;
+        }
+        return match;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import com.casewalker.narratorconfigs.config.NarratorConfigsModConfig;
+import com.casewalker.narratorconfigs.pipeline.NarrationPriorities;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Everything the narration filter decides with, as of one configuration and one set of translations: the
+ * configuration, the translations, and the matcher (along with the verdict cache it owns) and priorities built from
+ * them. A snapshot is built in full before it is published, and replaced as a whole rather than modified, so a reader
+ * holding one never sees a configuration together with a matcher built for another configuration.
+ * <p>
+ * None of the parts are copied: the configuration and translations must not be modified once they are part of a
+ * published snapshot.
+ *
+ * @param version Number of snapshots published before this one, for metrics and caches to tell snapshots apart
+ * @param config Configuration the matcher was built for
+ * @param language Code of the language the translations are in, such as "en_us", or empty if unknown
+ * @param translations Translations the matcher was built from
+ * @param matcher Matcher built from the configuration and translations
+ * @param priorities Priorities of accepted narrations, built from the configuration and translations
+ * @author Case Walker
+ */
+public record NarrationFilterSnapshot(
+        long version,
+        NarratorConfigsModConfig config,
+        String language,
+        Map<String, String> translations,
+        NarrationMatcher matcher,
+        NarrationPriorities priorities) {
+
+    /**
+     * Snapshot before any configuration or translations are loaded, which accepts nothing.
+     */
+    public static final NarrationFilterSnapshot EMPTY = new NarrationFilterSnapshot(
+            0, new NarratorConfigsModConfig(), "", Collections.emptyMap(), NarrationMatcher.EMPTY,
+            NarrationPriorities.NONE);
+
+    /**
+     * Create the snapshot succeeding this one.
+     *
+     * @param config Configuration the matcher was built for
+     * @param language Code of the language the translations are in
+     * @param translations Translations the matcher was built from
+     * @param matcher Matcher built from the configuration and translations
+     * @param priorities Priorities of accepted narrations, built from the configuration and translations
+     * @return The next snapshot, with the next version
+     */
+    public NarrationFilterSnapshot next(
+            final NarratorConfigsModConfig config,
+            final String language,
+            final Map<String, String> translations,
+            final NarrationMatcher matcher,
+            final NarrationPriorities priorities) {
+        return new NarrationFilterSnapshot(version + 1, config, language, translations, matcher, priorities);
+    }
+}
@@ -0,0 +1,670 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Matcher deciding whether a message is an accepted narration.
+ * <p>
+ * Every translation is treated as literal text where each placeholder ("%s", "%d", "%1$s", etc.) may be replaced by
+ * anything, anchored at the start of the message and open at the end. This is exactly the pattern
+ * <code>^literal.*literal.*</code> which used to be compiled per translation, but rather than running one
+ * {@link Pattern} per translation, all translations are combined into one union automaton: a nondeterministic
+ * automaton whose states are positions within each translation's literal text, which is determinized lazily while
+ * messages are matched. Each message is then accepted or rejected in a single pass over its characters, no matter how
+ * many translations are enabled.
+ * <p>
+ * Configured regular expressions cannot be combined into the automaton and are still checked with {@link Pattern}, but
+ * only those which could plausibly match: those whose leading literal text the message starts with, as found through a
+ * {@link LiteralPrefixTrie}, or else those whose longest required literal occurs in the message, as found through an
+ * {@link AhoCorasick} automaton. Only regular expressions without any required literal are candidates for every
+ * message. Each candidate is then only run if the message is long enough and has the characters it requires (see
+ * {@link FeasibilitySignature}), which rules most short messages out of long regular expressions, and run in linear
+ * time where possible (see {@link RegexFragment}). They may also be left uncompiled until they first become a
+ * candidate (see {@link RegexFragment#describe(String)}), just like the deterministic automaton states are only built
+ * once a message first reaches them.
+ * <p>
+ * Messages which come back again and again (such as screen narrations) can be checked through
+ * {@link #matchesCached(String)}, backed by a bounded cache of verdicts which lives and dies with this matcher.
+ * <p>
+ * Messages which are themselves a translation, and so still carry their translation key, can skip the translations
+ * altogether through {@link #matchesTranslation(String, SegmentedText)}: the key alone decides whether the translation
+ * is accepted, which also keeps a rejected translation from being accepted because it renders just like an accepted
+ * one.
+ *
+ * @author Case Walker
+ */
+public class NarrationMatcher {
+
+    /**
+     * Matcher which accepts nothing.
+     */
+    public static final NarrationMatcher EMPTY = new NarrationMatcher(Collections.emptyMap(), Collections.emptyList());
+
+    /**
+     * Default number of verdicts cached for {@link #matchesCached(String)}.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    /**
+     * Upper bound on the size of the lazily built deterministic automaton, counted in stored NFA states plus
+     * transition slots. Once exceeded, the cached states are dropped and determinization starts over.
+     */
+    private static final int MAX_CACHE_SIZE = 1 << 21;
+
+    /**
+     * Character class for line terminators appearing in no translation. Other characters appearing in no translation
+     * all share class 0.
+     */
+    private static final int LINE_TERMINATOR_CLASS = 1;
+
+    private final int translationCount;
+    private final String[] translationKeys;
+    private final List<RegexFragment> regularExpressions;
+
+    /**
+     * Verdict on translation keys, for {@link #matchesTranslation(String, SegmentedText)}.
+     */
+    private final Predicate<String> acceptedKeys;
+
+    /**
+     * Index of the regular expressions by their leading literal text.
+     */
+    private final LiteralPrefixTrie regularExpressionPrefixes = new LiteralPrefixTrie();
+
+    /**
+     * Index of the regular expressions without a leading literal by the longest literal they require anywhere.
+     */
+    private final AhoCorasick regularExpressionAnchors = new AhoCorasick();
+
+    /**
+     * Verdicts for {@link #matchesCached(String)}, or null if caching is disabled.
+     */
+    private final VerdictCache verdicts;
+
+    /**
+     * Mapping from every character to its character class, so transitions only need one slot per distinct character
+     * used in the translations.
+     */
+    private final char[] characterClasses;
+    private final int classCount;
+    private final boolean[] lineTerminatorClasses;
+
+    /**
+     * The NFA, indexed by state. Each translation occupies a contiguous run of states, one per literal character plus
+     * a final state. {@link #expected} holds the character class leading to the following state (or -1 for final
+     * states), {@link #wildcard} whether the state may consume any non line terminator and stay put (it is preceded by
+     * a placeholder), and {@link #accepting} whether the state is final.
+     */
+    private final int[] expected;
+    private final boolean[] wildcard;
+    private final boolean[] accepting;
+    private final int[] startStates;
+
+    /**
+     * Lazily determinized states, dropped wholesale when it grows past {@link #MAX_CACHE_SIZE}.
+     */
+    private volatile DfaCache cache;
+
+    /**
+     * Number of deterministic states built so far, including any which were since dropped.
+     */
+    private long determinizedStates;
+
+    /**
+     * Scratch space for determinization, only used while holding the lock on this object.
+     */
+    private final int[] scratch;
+
+    /**
+     * Compile a matcher from translations and regular expressions, without a verdict cache.
+     *
+     * @param translations Map of keys and values such as in en_us.json, containing only the accepted translations
+     * @param regularExpressions Regular expressions which should also be accepted
+     */
+    public NarrationMatcher(final Map<String, String> translations, final Collection<String> regularExpressions) {
+        this(translations, regularExpressions, 0);
+    }
+
+    /**
+     * Compile a matcher from translations and regular expressions.
+     *
+     * @param translations Map of keys and values such as in en_us.json, containing only the accepted translations
+     * @param regularExpressions Regular expressions which should also be accepted
+     * @param cacheSize Number of verdicts to cache for {@link #matchesCached(String)}, where 0 disables caching
+     */
+    public NarrationMatcher(
+            final Map<String, String> translations,
+            final Collection<String> regularExpressions,
+            final int cacheSize) {
+        this(translations.entrySet().stream()
+                        .map(entry -> TranslationFragment.parse(entry.getKey(), entry.getValue()))
+                        .toList(),
+                Set.copyOf(translations.keySet())::contains,
+                regularExpressions.stream().map(RegexFragment::compile).toList(),
+                cacheSize);
+    }
+
+    /**
+     * Assemble a matcher from already parsed translations and already compiled regular expressions.
+     *
+     * @param translations Accepted translations
+     * @param acceptedKeys Whether a translation key is accepted, which must hold for exactly the keys of the accepted
+     *                     translations
+     * @param regularExpressions Regular expressions which should also be accepted
+     * @param cacheSize Number of verdicts to cache for {@link #matchesCached(String)}, where 0 disables caching
+     */
+    NarrationMatcher(
+            final Collection<TranslationFragment> translations,
+            final Predicate<String> acceptedKeys,
+            final List<RegexFragment> regularExpressions,
+            final int cacheSize) {
+        this.verdicts = cacheSize > 0 ? new VerdictCache(cacheSize) : null;
+        this.translationCount = translations.size();
+        this.translationKeys = translations.stream().map(TranslationFragment::key).toArray(String[]::new);
+        this.acceptedKeys = acceptedKeys;
+        this.regularExpressions = List.copyOf(regularExpressions);
+        for (int i = 0; i < regularExpressions.size(); i++) {
+            final RegexFragment regex = regularExpressions.get(i);
+            if (regex.anchor().isEmpty()) {
+                regularExpressionPrefixes.add(regex.prefix(), i);
+            } else {
+                regularExpressionAnchors.add(regex.anchor(), i);
+            }
+        }
+        regularExpressionAnchors.build();
+
+        final List<String> literals = new ArrayList<>(translationCount);
+        final List<boolean[]> wildcards = new ArrayList<>(translationCount);
+        int stateCount = 0;
+        for (final TranslationFragment translation : translations) {
+            literals.add(translation.literal());
+            wildcards.add(translation.wildcards());
+            stateCount += translation.literal().length() + 1;
+        }
+
+        // assign one character class per distinct character used in the translations
+        characterClasses = new char[Character.MAX_VALUE + 1];
+        characterClasses['\n'] = LINE_TERMINATOR_CLASS;
+        characterClasses['\r'] = LINE_TERMINATOR_CLASS;
+        characterClasses['\u0085'] = LINE_TERMINATOR_CLASS;
+        characterClasses['\u2028'] = LINE_TERMINATOR_CLASS;
+        characterClasses['\u2029'] = LINE_TERMINATOR_CLASS;
+        final List<Boolean> terminatorClasses = new ArrayList<>(List.of(false, true));
+        final boolean[] assigned = new boolean[Character.MAX_VALUE + 1];
+        for (final String literal : literals) {
+            for (int i = 0; i < literal.length(); i++) {
+                final char c = literal.charAt(i);
+                if (!assigned[c]) {
+                    assigned[c] = true;
+                    terminatorClasses.add(isLineTerminator(c));
+                    characterClasses[c] = (char) (terminatorClasses.size() - 1);
+                }
+            }
+        }
+        classCount = terminatorClasses.size();
+        lineTerminatorClasses = new boolean[classCount];
+        for (int i = 0; i < classCount; i++) {
+            lineTerminatorClasses[i] = terminatorClasses.get(i);
+        }
+
+        // lay out the NFA states of each translation one after the other
+        expected = new int[stateCount];
+        wildcard = new boolean[stateCount];
+        accepting = new boolean[stateCount];
+        startStates = new int[translationCount];
+        int offset = 0;
+        for (int t = 0; t < translationCount; t++) {
+            final String literal = literals.get(t);
+            startStates[t] = offset;
+            for (int i = 0; i < literal.length(); i++) {
+                expected[offset + i] = characterClasses[literal.charAt(i)];
+            }
+            expected[offset + literal.length()] = -1;
+            accepting[offset + literal.length()] = true;
+            System.arraycopy(wildcards.get(t), 0, wildcard, offset, literal.length() + 1);
+            offset += literal.length() + 1;
+        }
+
+        scratch = new int[stateCount];
+        cache = new DfaCache();
+    }
+
+    /**
+     * Check whether a message is accepted by any of the translations or regular expressions.
+     *
+     * @param string Message to possibly be narrated
+     * @return Whether the message is accepted
+     */
+    public boolean matches(final String string) {
+        if (translationCount > 0 && matchesTranslations(string)) {
+            return true;
+        }
+        return matchesRegularExpressions(string);
+    }
+
+    /**
+     * Same as {@link #matches(String)}, but consuming the message segment by segment. The translations are matched
+     * without ever joining the segments, so a message rejected by the translations only costs a string if there are
+     * regular expressions to try it on.
+     *
+     * @param text Message to possibly be narrated
+     * @return Whether the message is accepted
+     */
+    public boolean matches(final SegmentedText text) {
+        if (translationCount > 0) {
+            final TranslationCursor cursor = new TranslationCursor();
+            text.forEachSegment(cursor);
+            if (cursor.isAccepted()) {
+                return true;
+            }
+        }
+        return !regularExpressions.isEmpty() && matchesRegularExpressions(text.asString());
+    }
+
+    /**
+     * Same as {@link #matches(SegmentedText)}, for a message which is the translation under the given key. The key is
+     * looked up rather than the message matched against the translations, and only the regular expressions are tried
+     * on the message if the key is not accepted.
+     *
+     * @param key Translation key of the message
+     * @param text Message to possibly be narrated
+     * @return Whether the message is accepted
+     */
+    public boolean matchesTranslation(final String key, final SegmentedText text) {
+        if (acceptedKeys.test(key)) {
+            return true;
+        }
+        return !regularExpressions.isEmpty() && matchesRegularExpressions(text.asString());
+    }
+
+    /**
+     * Same as {@link #matches(String)}, but going through the verdict cache first. Intended for messages which are
+     * likely to repeat.
+     *
+     * @param string Message to possibly be narrated
+     * @return Whether the message is accepted
+     */
+    public boolean matchesCached(final String string) {
+        if (verdicts == null) {
+            return matches(string);
+        }
+        final Boolean cached = verdicts.get(string);
+        if (cached != null) {
+            return cached;
+        }
+        final boolean verdict = matches(string);
+        verdicts.put(string, verdict);
+        return verdict;
+    }
+
+    /**
+     * Find what accepts a message, such as to report how often each translation and regular expression is matched.
+     * Unlike {@link #matches(String)}, every regular expression is tried in turn if no translation matches.
+     *
+     * @param string Message to possibly be narrated
+     * @return The key of a translation matching the message, or else the first regular expression matching it, or null
+     * if the message is rejected
+     */
+    public String findMatchingPattern(final String string) {
+        if (translationCount > 0) {
+            final DfaState accepted = acceptingState(string);
+            if (accepted != null) {
+                for (final int state : accepted.nfaStates) {
+                    if (accepting[state]) {
+                        // each translation's states start at its start state, so the last start state not after this
+                        // state is the translation's
+                        final int index = Arrays.binarySearch(startStates, state);
+                        return translationKeys[index >= 0 ? index : -index - 2];
+                    }
+                }
+            }
+        }
+        final long characters = FeasibilitySignature.characterBits(string);
+        for (final RegexFragment regex : regularExpressions) {
+            if (regex.signature().admits(string.length(), characters) && regex.matches(string)) {
+                return regex.regex();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The number of lookups answered by the verdict cache
+     */
+    public long getCacheHits() {
+        return verdicts == null ? 0 : verdicts.getHits();
+    }
+
+    /**
+     * @return The number of lookups not answered by the verdict cache
+     */
+    public long getCacheMisses() {
+        return verdicts == null ? 0 : verdicts.getMisses();
+    }
+
+    /**
+     * @return The number of translations and regular expressions making up this matcher
+     */
+    public int size() {
+        return translationCount + regularExpressions.size();
+    }
+
+    /**
+     * @return The number of regular expressions compiled so far, which may be fewer than all of them when they are
+     * only compiled once first needed
+     */
+    public int getMaterializedPatterns() {
+        return (int) regularExpressions.stream().filter(RegexFragment::isCompiled).count();
+    }
+
+    /**
+     * @return The number of matches of regular expressions given up on for taking too long, since the regular
+     * expressions were first configured
+     */
+    public long getRegexOverruns() {
+        return regularExpressions.stream().mapToLong(RegexFragment::getOverruns).sum();
+    }
+
+    /**
+     * @return The number of deterministic automaton states built so far, which only grows with the variety of
+     * messages actually matched
+     */
+    public synchronized long getDeterminizedStates() {
+        return determinizedStates;
+    }
+
+    @Override
+    public String toString() {
+        return "NarrationMatcher{translations=" + translationCount +
+                ", regularExpressions=" + regularExpressions.stream().map(RegexFragment::regex).toList() +
+                ", materializedPatterns=" + getMaterializedPatterns() +
+                ", invalidPatterns=" + regularExpressions.stream().filter(RegexFragment::isInvalid)
+                        .map(RegexFragment::regex).toList() +
+                ", backtrackingPatterns=" + regularExpressions.stream()
+                        .filter(regex -> regex.isCompiled() && !regex.isInvalid() && !regex.isLinear())
+                        .map(RegexFragment::regex).toList() + "}";
+    }
+
+    /**
+     * Run the message through the regular expressions which could plausibly match it: those the indexes find for it,
+     * and of those only the ones whose {@link FeasibilitySignature} admits the message.
+     *
+     * @param string Message to possibly be narrated
+     * @return Whether any regular expression matches the message
+     */
+    private boolean matchesRegularExpressions(final String string) {
+        if (regularExpressions.isEmpty()) {
+            return false;
+        }
+        final int length = string.length();
+        final long characters = FeasibilitySignature.characterBits(string);
+        if (regularExpressionPrefixes.anyMatch(string, i -> matchesRegularExpression(i, string, length, characters))) {
+            return true;
+        }
+        if (regularExpressionAnchors.isEmpty()) {
+            return false;
+        }
+        // an anchor may occur several times, but each regular expression only needs to run once
+        final boolean[] tried = new boolean[regularExpressions.size()];
+        return regularExpressionAnchors.anyMatch(string, i -> {
+            if (tried[i]) {
+                return false;
+            }
+            tried[i] = true;
+            return matchesRegularExpression(i, string, length, characters);
+        });
+    }
+
+    /**
+     * Run the message through a regular expression, unless its signature rules the message out.
+     *
+     * @param index Index of the regular expression
+     * @param string Message to possibly be narrated
+     * @param length Length of the message
+     * @param characters Character bits of the message (see {@link FeasibilitySignature#characterBits(String)})
+     * @return Whether the regular expression matches the message
+     */
+    private boolean matchesRegularExpression(
+            final int index,
+            final String string,
+            final int length,
+            final long characters) {
+        final RegexFragment regex = regularExpressions.get(index);
+        return regex.signature().admits(length, characters) && regex.matches(string);
+    }
+
+    /**
+     * Run the message through the union automaton of all translations.
+     *
+     * @param string Message to possibly be narrated
+     * @return Whether any translation matches the message
+     */
+    private boolean matchesTranslations(final String string) {
+        return acceptingState(string) != null;
+    }
+
+    /**
+     * Run the message through the union automaton of all translations, up to where the message is known to be
+     * accepted.
+     *
+     * @param string Message to possibly be narrated
+     * @return The accepting state in which the message was accepted, or null if no translation matches the message
+     */
+    private DfaState acceptingState(final String string) {
+        final int length = string.length();
+        // index of the next line terminator, which ends any trailing wildcard; -2 while not yet searched
+        int lineTerminator = -2;
+        DfaState state = cache.start;
+        for (int i = 0; i < length; i++) {
+            if (state.accepting && i > lineTerminator) {
+                lineTerminator = indexOfLineTerminator(string, i);
+                if (lineTerminator < 0) {
+                    // a translation is complete and the rest of the message fits its trailing wildcard
+                    return state;
+                }
+            }
+            final int characterClass = characterClasses[string.charAt(i)];
+            DfaState next = state.next[characterClass];
+            if (next == null) {
+                next = transition(state, characterClass);
+            }
+            if (next.nfaStates.length == 0) {
+                return null;
+            }
+            state = next;
+        }
+        return state.accepting ? state : null;
+    }
+
+    /**
+     * Determinize one transition of the automaton, reusing a cached state with the same NFA states if available.
+     *
+     * @param from State to transition from
+     * @param characterClass Class of the character consumed
+     * @return The state after consuming the character
+     */
+    private synchronized DfaState transition(final DfaState from, final int characterClass) {
+        final DfaState existing = from.next[characterClass];
+        if (existing != null) {
+            return existing;
+        }
+
+        // states are sorted, and each yields itself and/or its successor, so the output is sorted with adjacent
+        // duplicates only
+        final boolean consumesWildcard = !lineTerminatorClasses[characterClass];
+        int size = 0;
+        int last = -1;
+        for (final int state : from.nfaStates) {
+            if (consumesWildcard && wildcard[state] && state != last) {
+                scratch[size++] = state;
+                last = state;
+            }
+            if (expected[state] == characterClass && state + 1 != last) {
+                scratch[size++] = state + 1;
+                last = state + 1;
+            }
+        }
+
+        DfaCache current = cache;
+        final IntArrayKey key = new IntArrayKey(Arrays.copyOf(scratch, size));
+        DfaState next = current.states.get(key);
+        if (next == null) {
+            if (current.size + size + classCount > MAX_CACHE_SIZE) {
+                current = new DfaCache();
+                cache = current;
+            }
+            next = current.add(key);
+            determinizedStates++;
+        }
+        from.next[characterClass] = next;
+        return next;
+    }
+
+    /**
+     * Run of the union automaton over a message fed to it segment by segment. Since it cannot look ahead like
+     * {@link #matchesTranslations(String)}, it remembers whether a translation was complete at some point with no line
+     * terminator since, in which case the rest of the message fits that translation's trailing wildcard unless a line
+     * terminator comes up.
+     */
+    private final class TranslationCursor implements Predicate<String> {
+        private DfaState state = cache.start;
+        private boolean complete;
+
+        @Override
+        public boolean test(final String segment) {
+            for (int i = 0; i < segment.length(); i++) {
+                final char c = segment.charAt(i);
+                if (state.accepting) {
+                    complete = true;
+                }
+                if (complete && isLineTerminator(c)) {
+                    complete = false;
+                }
+                if (state.nfaStates.length == 0) {
+                    if (!complete) {
+                        // no translation can match anymore, so the rest of the message does not matter
+                        return false;
+                    }
+                    continue;
+                }
+                final int characterClass = characterClasses[c];
+                DfaState next = state.next[characterClass];
+                if (next == null) {
+                    next = transition(state, characterClass);
+                }
+                state = next;
+            }
+            return true;
+        }
+
+        boolean isAccepted() {
+            return complete || state.accepting;
+        }
+    }
+
+    private static int indexOfLineTerminator(final String string, final int from) {
+        for (int i = from; i < string.length(); i++) {
+            if (isLineTerminator(string.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Line terminators, which are the characters the regular expression "." does not match.
+     */
+    private static boolean isLineTerminator(final char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * State of the deterministic automaton, standing for a set of NFA states. Transitions are filled in as they are
+     * first needed.
+     */
+    private static final class DfaState {
+        final int[] nfaStates;
+        final boolean accepting;
+        final DfaState[] next;
+
+        DfaState(final int[] nfaStates, final boolean accepting, final int classCount) {
+            this.nfaStates = nfaStates;
+            this.accepting = accepting;
+            this.next = new DfaState[classCount];
+        }
+    }
+
+    /**
+     * The determinized states built so far, keyed by their NFA states.
+     */
+    private final class DfaCache {
+        final Map<IntArrayKey, DfaState> states = new HashMap<>();
+        final DfaState start;
+        int size;
+
+        DfaCache() {
+            start = add(new IntArrayKey(startStates.clone()));
+        }
+
+        DfaState add(final IntArrayKey key) {
+            boolean isAccepting = false;
+            for (final int state : key.values) {
+                if (accepting[state]) {
+                    isAccepting = true;
+                    break;
+                }
+            }
+            final DfaState state = new DfaState(key.values, isAccepting, classCount);
+            states.put(key, state);
+            size += key.values.length + classCount;
+            return state;
+        }
+    }
+
+    /**
+     * Hash key wrapping a sorted array of NFA states.
+     */
+    private record IntArrayKey(int[] values) {
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof IntArrayKey other && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(values);
+        }
+    }
+}
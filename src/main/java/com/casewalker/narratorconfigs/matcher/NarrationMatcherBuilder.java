@@ -0,0 +1,324 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Builder for {@link NarrationMatcher}s which keeps the parsed translations and compiled regular expressions of the
+ * previous build, so that rebuilding after a configuration change only redoes the work the change calls for:
+ * <ul>
+ *     <li>Only translation keys under an added or removed prefix are selected again, since the verdict of every other
+ *     key is unaffected</li>
+ *     <li>Translations are only parsed again if they are newly selected or their text changed</li>
+ *     <li>Regular expressions are only compiled (or, when compiled lazily, analyzed) again if they were not configured
+ *     before</li>
+ * </ul>
+ * The automaton itself is then assembled from the kept pieces, which is a linear copy, with its deterministic states
+ * built lazily as usual.
+ * <p>
+ * The translations are assumed to be unchanged for as long as the very same map is passed in; a different map (such as
+ * after a language change) selects every key again, still reusing the parsed translations whose text is unchanged.
+ * <p>
+ * Regular expressions are handed to the matcher most frequently matched first, going by the hits counted in this
+ * session plus those learned in earlier sessions (see {@link #setHitCountFile(Path)}), and the matcher keeps adapting
+ * that order as it goes. Learned hits are halved every time they are saved, so the order follows a change in traffic
+ * within a few sessions.
+ *
+ * @author Case Walker
+ */
+public class NarrationMatcherBuilder {
+
+    private Map<String, String> translations = Collections.emptyMap();
+    private String[] sortedKeys = new String[0];
+    private List<String> enabledPrefixes = Collections.emptyList();
+    private List<String> disabledPrefixes = Collections.emptyList();
+    private final Map<String, TranslationFragment> selected = new HashMap<>();
+    private volatile Map<String, RegexFragment> regularExpressions = Collections.emptyMap();
+
+    private Path hitCountFile;
+    private final Map<String, Long> learnedHitCounts = new HashMap<>();
+    /**
+     * Hits counted in this session by regular expressions which are no longer built (or were rebuilt).
+     */
+    private final Map<String, Long> retiredHitCounts = new ConcurrentHashMap<>();
+    /**
+     * Hit counts last written to the hit count file in this session, or null if nothing was written yet.
+     */
+    private Map<String, Long> savedHitCounts;
+
+    private Consumer<String> overrunLog = message -> {};
+    private Consumer<String> invalidLog = message -> {};
+
+    private int reevaluatedKeys;
+    private int parsedTranslations;
+    private int compiledRegularExpressions;
+
+    /**
+     * Build a matcher for the given translations and configuration, reusing whatever is unchanged since the last
+     * build.
+     *
+     * @param translations Map of keys and values such as in en_us.json
+     * @param enabledPrefixes Key prefixes to enable
+     * @param disabledPrefixes Key prefixes to disable
+     * @param regularExpressions Regular expressions which should also be accepted
+     * @param cacheSize Number of verdicts to cache (see {@link NarrationMatcher#matchesCached(String)})
+     * @param lazyRegularExpressions Whether to only compile regular expressions once they are first needed, rather
+     *                               than right away; either way, invalid ones match nothing rather than failing the
+     *                               build, and compiling them right away reports them to the invalid log
+     * @return The matcher
+     */
+    public synchronized NarrationMatcher build(
+            final Map<String, String> translations,
+            final List<String> enabledPrefixes,
+            final List<String> disabledPrefixes,
+            final List<String> regularExpressions,
+            final int cacheSize,
+            final boolean lazyRegularExpressions) {
+
+        reevaluatedKeys = 0;
+        parsedTranslations = 0;
+        compiledRegularExpressions = 0;
+        final KeyPrefixFilter filter = new KeyPrefixFilter(enabledPrefixes, disabledPrefixes);
+
+        if (translations != this.translations) {
+            sortedKeys = translations.keySet().toArray(String[]::new);
+            Arrays.sort(sortedKeys);
+            // select every key again, but keep the parsed translations around in case their text is unchanged
+            final Map<String, TranslationFragment> previous = new HashMap<>(selected);
+            selected.clear();
+            for (final String key : sortedKeys) {
+                final TranslationFragment fragment = previous.get(key);
+                if (fragment != null) {
+                    selected.put(key, fragment);
+                }
+                reevaluate(key, translations.get(key), filter);
+            }
+            this.translations = translations;
+        } else {
+            // only keys under a prefix which was added or removed (from either list) can change verdict
+            final Set<String> changedPrefixes = symmetricDifference(this.enabledPrefixes, enabledPrefixes);
+            changedPrefixes.addAll(symmetricDifference(this.disabledPrefixes, disabledPrefixes));
+            for (final String prefix : changedPrefixes) {
+                int index = Arrays.binarySearch(sortedKeys, prefix);
+                for (index = index < 0 ? -index - 1 : index;
+                     index < sortedKeys.length && sortedKeys[index].startsWith(prefix);
+                     index++) {
+                    reevaluate(sortedKeys[index], translations.get(sortedKeys[index]), filter);
+                }
+            }
+        }
+        this.enabledPrefixes = List.copyOf(enabledPrefixes);
+        this.disabledPrefixes = List.copyOf(disabledPrefixes);
+
+        final Map<String, RegexFragment> compiled = new HashMap<>();
+        final List<RegexFragment> regexFragments = new ArrayList<>(regularExpressions.size());
+        for (final String regex : regularExpressions) {
+            RegexFragment fragment = compiled.get(regex);
+            if (fragment == null) {
+                fragment = this.regularExpressions.get(regex);
+            }
+            if (fragment == null || !lazyRegularExpressions && !fragment.isCompiled()) {
+                fragment = lazyRegularExpressions
+                        ? RegexFragment.describe(regex, overrunLog)
+                        : compileOrInvalidate(regex);
+                fragment.addHits(learnedHitCounts.getOrDefault(regex, 0L) + retiredHitCounts.getOrDefault(regex, 0L));
+                compiledRegularExpressions++;
+            }
+            compiled.put(regex, fragment);
+            regexFragments.add(fragment);
+        }
+        // the hits of this session are kept for regular expressions which were dropped or rebuilt
+        this.regularExpressions.forEach((regex, fragment) -> {
+            if (compiled.get(regex) != fragment) {
+                retiredHitCounts.merge(regex, fragment.getSessionHits(), Long::sum);
+            }
+        });
+        this.regularExpressions = compiled;
+        // the sort is stable, so regular expressions without hits keep their configured order
+        regexFragments.sort(Comparator.comparingLong(RegexFragment::getHits).reversed());
+
+        // a key under an enabled prefix is only accepted if it is one of the selected translations, not any key at all
+        return new NarrationMatcher(
+                selected.values(), Set.copyOf(selected.keySet())::contains, regexFragments, cacheSize);
+    }
+
+    /**
+     * Compile a regular expression right away, reporting it to the invalid log and letting it match nothing if it is
+     * invalid, so that one bad regular expression never fails a build (which may run while translations load).
+     */
+    private RegexFragment compileOrInvalidate(final String regex) {
+        try {
+            return RegexFragment.compile(regex, overrunLog);
+        } catch (final PatternSyntaxException e) {
+            invalidLog.accept("Invalid regular expression '" + regex + "' will never match: " + e.getDescription());
+            return RegexFragment.invalid(regex, overrunLog);
+        }
+    }
+
+    /**
+     * Keep the hit counts of the regular expressions in the given file, loading the counts it already holds so they
+     * decide the order of the next build.
+     *
+     * @param hitCountFile File to keep the hit counts in
+     * @throws IOException If the file exists but cannot be read
+     */
+    public synchronized void setHitCountFile(final Path hitCountFile) throws IOException {
+        this.hitCountFile = hitCountFile;
+        learnedHitCounts.clear();
+        learnedHitCounts.putAll(HitCountStore.load(hitCountFile));
+    }
+
+    /**
+     * Report regular expressions whose matches are given up on for taking too long (see
+     * {@link RegexFragment#STEP_BUDGET}) to the given log, for regular expressions built from now on.
+     *
+     * @param overrunLog Receiver of a message for every match given up on
+     */
+    public synchronized void setOverrunLog(final Consumer<String> overrunLog) {
+        this.overrunLog = overrunLog;
+    }
+
+    /**
+     * Report regular expressions which fail to compile when they are compiled right away to the given log.
+     *
+     * @param invalidLog Receiver of a message for every invalid regular expression
+     */
+    public synchronized void setInvalidLog(final Consumer<String> invalidLog) {
+        this.invalidLog = invalidLog;
+    }
+
+    /**
+     * Write the hit counts of the regular expressions to the hit count file, if there is one. The hits counted in
+     * this session by this builder and by the other builders are added to the hits learned in earlier sessions, and
+     * the sum is halved, so that hits from long ago fade out. Counts of regular expressions which are no longer
+     * configured are kept (and keep fading) in case they come back. Saving more than once in a session writes the
+     * same counts plus whatever was matched in between, so the file is left alone if nothing was matched since.
+     *
+     * @param others Other builders whose matchers were used in this session, such as for other languages
+     * @return Whether the file was written
+     * @throws IOException If the file cannot be written
+     */
+    public synchronized boolean saveHitCounts(final NarrationMatcherBuilder... others) throws IOException {
+        if (hitCountFile == null) {
+            return false;
+        }
+        final Map<String, Long> hitCounts = new HashMap<>(learnedHitCounts);
+        getSessionHitCounts().forEach((regex, hits) -> hitCounts.merge(regex, hits, Long::sum));
+        for (final NarrationMatcherBuilder other : others) {
+            other.getSessionHitCounts().forEach((regex, hits) -> hitCounts.merge(regex, hits, Long::sum));
+        }
+        hitCounts.replaceAll((regex, hits) -> hits / 2);
+        hitCounts.values().removeIf(hits -> hits == 0);
+        if (hitCounts.equals(savedHitCounts)) {
+            return false;
+        }
+        HitCountStore.save(hitCountFile, hitCounts);
+        savedHitCounts = hitCounts;
+        return true;
+    }
+
+    /**
+     * Collect the hits counted in this session without waiting for a build in progress, so saving never waits on
+     * another builder. A build finishing meanwhile may leave out the hits of the regular expressions it rebuilt, which
+     * the next save counts again.
+     *
+     * @return The hits counted in this session by each regular expression this builder built, not counting the hits
+     * learned in earlier sessions
+     */
+    Map<String, Long> getSessionHitCounts() {
+        final Map<String, Long> hitCounts = new HashMap<>(retiredHitCounts);
+        regularExpressions.forEach((regex, fragment) ->
+                hitCounts.merge(regex, fragment.getSessionHits(), Long::sum));
+        return hitCounts;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "NarrationMatcherBuilder{selected=" + selected.size() +
+                ", reevaluatedKeys=" + reevaluatedKeys +
+                ", parsedTranslations=" + parsedTranslations +
+                ", compiledRegularExpressions=" + compiledRegularExpressions + "}";
+    }
+
+    /**
+     * @return The number of keys whose verdict was checked during the last build
+     */
+    synchronized int getReevaluatedKeys() {
+        return reevaluatedKeys;
+    }
+
+    /**
+     * @return The number of translations parsed during the last build
+     */
+    synchronized int getParsedTranslations() {
+        return parsedTranslations;
+    }
+
+    /**
+     * @return The number of regular expressions compiled (or analyzed, when compiled lazily) during the last build
+     */
+    synchronized int getCompiledRegularExpressions() {
+        return compiledRegularExpressions;
+    }
+
+    /**
+     * Check a key against the filter, selecting (and parsing, if needed) or deselecting its translation.
+     */
+    private void reevaluate(final String key, final String translation, final KeyPrefixFilter filter) {
+        reevaluatedKeys++;
+        if (!filter.accepts(key)) {
+            selected.remove(key);
+            return;
+        }
+        final TranslationFragment fragment = selected.get(key);
+        if (fragment == null || !fragment.translation().equals(translation)) {
+            selected.put(key, TranslationFragment.parse(key, translation));
+            parsedTranslations++;
+        }
+    }
+
+    private static Set<String> symmetricDifference(final Collection<String> a, final Collection<String> b) {
+        final Set<String> output = new HashSet<>(a);
+        output.addAll(b);
+        final Set<String> both = new HashSet<>(a);
+        both.retainAll(b);
+        output.removeAll(both);
+        return output;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import com.casewalker.narratorconfigs.pipeline.NarrationPriorities;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache of matchers by language and filter settings, so switching back to a language
+ * whose matcher was already built (or prebuilt) for the current settings does not rebuild it. The narration priorities,
+ * which are built from the same settings and translations, are cached along with the matcher.
+ * <p>
+ * Matchers are cached under the settings they were built from, such as
+ * {@link com.casewalker.narratorconfigs.config.NarratorConfigsModConfig#getFilterSettings()}, so a configuration
+ * change which leaves those settings alone keeps every matcher, and a matcher built for other settings (such as by a
+ * prebuild which was overtaken by a configuration change) is never returned for the current ones. A matcher is also
+ * only returned for the very translations it was built from, since a resource pack reload can change the translations
+ * of a language.
+ *
+ * @author Case Walker
+ */
+public final class NarrationMatcherCache {
+
+    /**
+     * Default number of matchers to keep.
+     */
+    public static final int DEFAULT_CAPACITY = 4;
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int capacity;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity Maximum number of matchers to keep, where 0 disables the cache
+     */
+    public NarrationMatcherCache(final int capacity) {
+        this.capacity = Math.max(0, capacity);
+    }
+
+    /**
+     * @param capacity Maximum number of matchers to keep, evicting the least recently used ones if there are more
+     *                 already
+     */
+    public synchronized void setCapacity(final int capacity) {
+        this.capacity = Math.max(0, capacity);
+        evict();
+    }
+
+    /**
+     * Look up the matcher and priorities for a language, counting a hit or a miss.
+     *
+     * @param language Language code, such as "en_us"
+     * @param settings Settings the matcher and priorities are built from
+     * @param translations Translations of the language as loaded now
+     * @return The entry built from these settings and translations, or null if there is none
+     */
+    public synchronized Entry get(
+            final String language,
+            final Object settings,
+            final Map<String, String> translations) {
+        final Entry entry = entries.get(new Key(language, settings));
+        // a language loaded again comes in a new map, so the contents are compared unless the map is the same one
+        if (entry != null && (entry.translations == translations || entry.translations.equals(translations))) {
+            hits++;
+            return entry;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * @param language Language code, such as "en_us"
+     * @param settings Settings the matcher and priorities are built from
+     * @return Whether a matcher is cached for the language and settings, whichever translations it was built from
+     */
+    public synchronized boolean contains(final String language, final Object settings) {
+        return entries.containsKey(new Key(language, settings));
+    }
+
+    /**
+     * Cache the matcher and priorities for a language.
+     *
+     * @param language Language code, such as "en_us"
+     * @param settings Settings the matcher and priorities were built from
+     * @param translations Translations the matcher and priorities were built from
+     * @param matcher Matcher to cache
+     * @param priorities Priorities to cache
+     */
+    public synchronized void put(
+            final String language,
+            final Object settings,
+            final Map<String, String> translations,
+            final NarrationMatcher matcher,
+            final NarrationPriorities priorities) {
+        if (capacity == 0) {
+            return;
+        }
+        entries.put(new Key(language, settings), new Entry(translations, matcher, priorities));
+        evict();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Drop the least recently used matchers beyond the capacity.
+     */
+    private void evict() {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > capacity && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private record Key(String language, Object settings) {}
+
+    /**
+     * Matcher and priorities of a language, along with the translations they were built from.
+     */
+    public record Entry(Map<String, String> translations, NarrationMatcher matcher, NarrationPriorities priorities) {}
+}
@@ -0,0 +1,328 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A configured regular expression, analyzed for the literal text it requires so the {@link NarrationMatcher} can index
+ * it. It can be kept and reused for as long as the regular expression is configured.
+ * <p>
+ * The regular expression is either compiled right away ({@link #compile(String)}), or only once the index first makes
+ * it a candidate for some message ({@link #describe(String)}), so that regular expressions which never come close to
+ * matching anything cost nothing but their analysis.
+ * <p>
+ * A regular expression within the regular subset {@link LinearRegex} supports is run on that linear-time engine
+ * instead, so that no configuration can make matching a message take exponential time. Any other regular expression
+ * (or message {@link LinearRegex} cannot handle) is run by {@link Pattern} within a budget of {@link #STEP_BUDGET}
+ * character reads, after which the match is given up as failed and reported to the overrun log, rather than freezing
+ * whichever thread is narrating.
+ *
+ * @author Case Walker
+ */
+final class RegexFragment {
+
+    /**
+     * Pattern standing in for a regular expression which turned out to be invalid.
+     */
+    private static final Pattern NEVER_MATCHES = Pattern.compile("(?!)");
+
+    /**
+     * Number of times a backtracking match may read a character of the message before it is given up.
+     */
+    static final int STEP_BUDGET = 1_000_000;
+
+    private final String regex;
+    private final String prefix;
+    private final String anchor;
+    private final FeasibilitySignature signature;
+    private final Consumer<String> overrunLog;
+    private volatile LinearRegex linear;
+    private volatile Pattern pattern;
+    private volatile boolean invalid;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong seededHits = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+
+    private RegexFragment(final String regex, final Pattern pattern, final Consumer<String> overrunLog) {
+        this.regex = regex;
+        this.prefix = RegexLiterals.leadingLiteral(regex);
+        this.anchor = prefix.isEmpty() ? RegexLiterals.longestRequiredLiteral(regex) : "";
+        this.signature = RegexLiterals.signature(regex);
+        this.overrunLog = overrunLog;
+        if (pattern != null) {
+            this.linear = LinearRegex.compile(regex);
+        }
+        this.pattern = pattern;
+    }
+
+    /**
+     * Compile and analyze a regular expression.
+     *
+     * @param regex Regular expression
+     * @return The compiled regular expression
+     * @throws PatternSyntaxException If the regular expression is invalid
+     */
+    static RegexFragment compile(final String regex) {
+        return compile(regex, message -> {});
+    }
+
+    /**
+     * Same as {@link #compile(String)}, reporting matches given up on to the overrun log.
+     *
+     * @param regex Regular expression
+     * @param overrunLog Receiver of a message whenever a match exceeds the {@link #STEP_BUDGET}
+     * @return The compiled regular expression
+     * @throws PatternSyntaxException If the regular expression is invalid
+     */
+    static RegexFragment compile(final String regex, final Consumer<String> overrunLog) {
+        return new RegexFragment(regex, Pattern.compile(regex), overrunLog);
+    }
+
+    /**
+     * Analyze a regular expression, leaving it to be compiled when it is first needed. If it then turns out to be
+     * invalid, it matches nothing.
+     *
+     * @param regex Regular expression
+     * @return The analyzed regular expression
+     */
+    static RegexFragment describe(final String regex) {
+        return describe(regex, message -> {});
+    }
+
+    /**
+     * Same as {@link #describe(String)}, reporting matches given up on to the overrun log.
+     *
+     * @param regex Regular expression
+     * @param overrunLog Receiver of a message whenever a match exceeds the {@link #STEP_BUDGET}
+     * @return The analyzed regular expression
+     */
+    static RegexFragment describe(final String regex, final Consumer<String> overrunLog) {
+        return new RegexFragment(regex, null, overrunLog);
+    }
+
+    /**
+     * Stand in for a regular expression which failed to compile, matching nothing.
+     *
+     * @param regex Regular expression which is invalid
+     * @param overrunLog Receiver of a message whenever a match exceeds the {@link #STEP_BUDGET}
+     * @return The regular expression, already marked invalid
+     */
+    static RegexFragment invalid(final String regex, final Consumer<String> overrunLog) {
+        final RegexFragment fragment = new RegexFragment(regex, null, overrunLog);
+        fragment.invalid = true;
+        fragment.pattern = NEVER_MATCHES;
+        return fragment;
+    }
+
+    /**
+     * @return The regular expression as configured
+     */
+    String regex() {
+        return regex;
+    }
+
+    /**
+     * @return Literal text any matching message starts with (see {@link RegexLiterals#leadingLiteral(String)})
+     */
+    String prefix() {
+        return prefix;
+    }
+
+    /**
+     * @return Literal text any matching message contains, only used when there is no prefix (see
+     * {@link RegexLiterals#longestRequiredLiteral(String)})
+     */
+    String anchor() {
+        return anchor;
+    }
+
+    /**
+     * @return Minimum length and characters of any matching message (see {@link RegexLiterals#signature(String)})
+     */
+    FeasibilitySignature signature() {
+        return signature;
+    }
+
+    /**
+     * @return Whether the regular expression has been compiled
+     */
+    boolean isCompiled() {
+        return pattern != null;
+    }
+
+    /**
+     * @return Whether the regular expression runs on the linear-time engine, once compiled
+     */
+    boolean isLinear() {
+        return linear != null;
+    }
+
+    /**
+     * @return Whether the regular expression failed to compile
+     */
+    boolean isInvalid() {
+        return invalid;
+    }
+
+    /**
+     * @return The number of messages this regular expression has matched, including any hits it was seeded with
+     */
+    long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of messages this regular expression has matched, not counting the hits it was seeded with
+     */
+    long getSessionHits() {
+        return hits.get() - seededHits.get();
+    }
+
+    /**
+     * @return The number of matches given up on for exceeding the {@link #STEP_BUDGET}
+     */
+    long getOverruns() {
+        return overruns.get();
+    }
+
+    /**
+     * Seed the hit count, such as with the hits learned in a previous session.
+     *
+     * @param count Number of hits to add
+     */
+    void addHits(final long count) {
+        seededHits.addAndGet(count);
+        hits.addAndGet(count);
+    }
+
+    /**
+     * Check whether the regular expression matches the whole message, compiling it first if needed, and count a hit
+     * if it does.
+     *
+     * @param string Message to match
+     * @return Whether the regular expression matches
+     */
+    boolean matches(final String string) {
+        Pattern compiled = pattern;
+        if (compiled == null) {
+            // compiling twice in a race is harmless, both patterns being equivalent
+            try {
+                compiled = Pattern.compile(regex);
+                // published before the pattern, so whoever sees the pattern sees the engine too
+                linear = LinearRegex.compile(regex);
+            } catch (final PatternSyntaxException e) {
+                invalid = true;
+                compiled = NEVER_MATCHES;
+            }
+            pattern = compiled;
+        }
+        final LinearRegex engine = linear;
+        final boolean matched = engine != null && !hasSurrogates(string)
+                ? engine.matches(string)
+                : matchesWithinBudget(compiled, string);
+        if (matched) {
+            hits.incrementAndGet();
+        }
+        return matched;
+    }
+
+    /**
+     * Run the backtracking engine on the message, giving up once it has read {@link #STEP_BUDGET} characters.
+     */
+    private boolean matchesWithinBudget(final Pattern compiled, final String string) {
+        try {
+            return compiled.matcher(new BudgetedSequence(string)).matches();
+        } catch (final StepBudgetExceededException e) {
+            final long count = overruns.incrementAndGet();
+            // reported on the first overrun and then ever more rarely, so a regular expression overrunning on every
+            // message does not flood the log
+            if (Long.bitCount(count) == 1) {
+                overrunLog.accept("Gave up matching the regular expression \"" + regex + "\" against a message of " +
+                        string.length() + " characters after " + STEP_BUDGET + " steps, treating it as not " +
+                        "matched (" + count + " time(s) so far)");
+            }
+            return false;
+        }
+    }
+
+    private static boolean hasSurrogates(final String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (Character.isSurrogate(string.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * View of a message which counts every character read by the backtracking engine against the budget.
+     */
+    private static final class BudgetedSequence implements CharSequence {
+        private final String string;
+        private int remaining = STEP_BUDGET;
+
+        BudgetedSequence(final String string) {
+            this.string = string;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (--remaining < 0) {
+                throw new StepBudgetExceededException();
+            }
+            return string.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return string.length();
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return string.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return string;
+        }
+    }
+
+    /**
+     * Thrown out of the backtracking engine once the budget is exhausted.
+     */
+    private static final class StepBudgetExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        StepBudgetExceededException() {
+            // only used for control flow, so there is no message, cause or (costly) stack trace to fill in
+            super(null, null, false, false);
+        }
+    }
+}
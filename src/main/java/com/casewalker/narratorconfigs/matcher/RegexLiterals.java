@@ -0,0 +1,365 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+/**
+ * Conservative analysis of the literal text required by a regular expression, used to index regular expressions so
+ * that only plausible ones are run against a message. Whenever the syntax is anything but plain literal characters,
+ * the analysis gives up on that part of the regular expression, so a returned literal is always truly required.
+ *
+ * @author Case Walker
+ */
+final class RegexLiterals {
+
+    private RegexLiterals() {}
+
+    /**
+     * Find the literal text any message fully matching the regular expression must start with. Since messages are
+     * checked with {@link java.util.regex.Matcher#matches()}, every regular expression is anchored at the start
+     * whether or not it begins with "^".
+     *
+     * @param regex Regular expression to analyze
+     * @return The leading literal, which is empty if none could be determined
+     */
+    static String leadingLiteral(final String regex) {
+        if (hasTopLevelAlternation(regex)) {
+            return "";
+        }
+        final StringBuilder literal = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            final char literalChar;
+            final int next;
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    // character classes, anchors, back-references, quoting and control escapes all end the literal
+                    break;
+                }
+                literalChar = regex.charAt(i + 1);
+                next = i + 2;
+            } else if (".[]{}()*+?|^$".indexOf(c) >= 0) {
+                break;
+            } else {
+                literalChar = c;
+                next = i + 1;
+            }
+            if (next < regex.length() && "?*+{".indexOf(regex.charAt(next)) >= 0) {
+                // a quantifier makes the last character optional or repeated, and the last character is the whole
+                // supplementary character if it is the second half of a surrogate pair
+                if (Character.isLowSurrogate(literalChar) && !literal.isEmpty() &&
+                        Character.isHighSurrogate(literal.charAt(literal.length() - 1))) {
+                    literal.setLength(literal.length() - 1);
+                }
+                break;
+            }
+            literal.append(literalChar);
+            i = next;
+        }
+        return literal.toString();
+    }
+
+    /**
+     * Find the longest run of literal text which must appear somewhere in any message matching the regular expression.
+     * Only the top level of the regular expression is considered; groups, character classes and quantified characters
+     * end a run, and any syntax which is not fully understood (quoting, flags, escapes with arguments) ends the search.
+     *
+     * @param regex Regular expression to analyze
+     * @return The longest required literal, which is empty if none could be determined
+     */
+    static String longestRequiredLiteral(final String regex) {
+        if (hasTopLevelAlternation(regex)) {
+            return "";
+        }
+        String longest = "";
+        final StringBuilder run = new StringBuilder();
+        // whether the previous atom was a literal character, which a following quantifier would apply to
+        boolean literalAtom = false;
+        int i = 0;
+        scan:
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            final boolean quantifier = c == '?' || c == '*' || c == '+' || c == '{';
+            if (quantifier && literalAtom) {
+                // the quantified character is the whole supplementary character if it ends in a surrogate pair
+                final int length = run.length();
+                final boolean pair = length >= 2 && Character.isLowSurrogate(run.charAt(length - 1)) &&
+                        Character.isHighSurrogate(run.charAt(length - 2));
+                run.setLength(length - (pair ? 2 : 1));
+            }
+            literalAtom = false;
+            switch (c) {
+                case '\\' -> {
+                    if (i + 1 >= regex.length()) {
+                        break scan;
+                    }
+                    final char escaped = regex.charAt(i + 1);
+                    if (!Character.isLetterOrDigit(escaped)) {
+                        run.append(escaped);
+                        literalAtom = true;
+                    } else if ("dDsSwWbBAGZzhHvVRX".indexOf(escaped) >= 0) {
+                        longest = longer(longest, run);
+                    } else {
+                        // escapes taking arguments (or quoting) are not followed any further
+                        break scan;
+                    }
+                    i += 2;
+                }
+                case '(' -> {
+                    if (i + 2 < regex.length() && regex.charAt(i + 1) == '?' &&
+                            ":=!<>".indexOf(regex.charAt(i + 2)) < 0) {
+                        // inline flags may change how the rest of the regular expression matches
+                        break scan;
+                    }
+                    longest = longer(longest, run);
+                    i = skipGroup(regex, i);
+                }
+                case '[' -> {
+                    longest = longer(longest, run);
+                    i = skipClass(regex, i);
+                }
+                case '{' -> {
+                    longest = longer(longest, run);
+                    final int end = regex.indexOf('}', i);
+                    if (end < 0) {
+                        break scan;
+                    }
+                    i = end + 1;
+                }
+                case '?', '*', '+', '.', '^', '$', ')', ']', '}', '|' -> {
+                    longest = longer(longest, run);
+                    i++;
+                }
+                default -> {
+                    run.append(c);
+                    literalAtom = true;
+                    i++;
+                }
+            }
+        }
+        return longer(longest, run);
+    }
+
+    /**
+     * Find the minimum length of, and the characters required in, any message matching the regular expression. Every
+     * top level atom counts towards the length unless a quantifier lets it be skipped; groups count for nothing, and
+     * any syntax which is not fully understood (quoting, flags, escapes with arguments, back-references, surrogate
+     * pairs) ends the search with whatever was counted before it.
+     *
+     * @param regex Regular expression to analyze
+     * @return The signature, which rules nothing out if nothing could be determined
+     */
+    static FeasibilitySignature signature(final String regex) {
+        if (hasTopLevelAlternation(regex)) {
+            return FeasibilitySignature.NONE;
+        }
+        long minimumLength = 0;
+        long requiredCharacters = 0;
+        // the last atom, which is only counted once it is known not to be made optional by a quantifier
+        long atomLength = 0;
+        long atomCharacter = 0;
+        int i = 0;
+        scan:
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '?' || c == '*' || c == '+' || c == '{') {
+                if (c == '{') {
+                    final int end = regex.indexOf('}', i);
+                    final String bounds = end < 0 ? "" : regex.substring(i + 1, end).split(",", -1)[0];
+                    if (bounds.isEmpty() || !bounds.chars().allMatch(Character::isDigit) || bounds.length() > 9) {
+                        atomLength = 0;
+                        atomCharacter = 0;
+                        break;
+                    }
+                    atomLength *= Integer.parseInt(bounds);
+                    i = end + 1;
+                } else {
+                    i++;
+                }
+                if (c == '?' || c == '*' || atomLength == 0) {
+                    atomLength = 0;
+                    atomCharacter = 0;
+                }
+                // a lazy or possessive marker following the quantifier then applies to nothing
+                minimumLength += atomLength;
+                requiredCharacters |= atomCharacter;
+                atomLength = 0;
+                atomCharacter = 0;
+                continue;
+            }
+            minimumLength += atomLength;
+            requiredCharacters |= atomCharacter;
+            atomLength = 0;
+            atomCharacter = 0;
+            switch (c) {
+                case '\\' -> {
+                    if (i + 1 >= regex.length()) {
+                        break scan;
+                    }
+                    final char escaped = regex.charAt(i + 1);
+                    if (Character.isHighSurrogate(escaped)) {
+                        break scan;
+                    } else if (!Character.isLetterOrDigit(escaped)) {
+                        atomLength = 1;
+                        atomCharacter = 1L << escaped;
+                    } else if ("dDsSwWhHvVRXtnrfae".indexOf(escaped) >= 0) {
+                        atomLength = 1;
+                    } else if ("bBAGZz".indexOf(escaped) < 0) {
+                        // escapes taking arguments (or quoting) are not followed any further
+                        break scan;
+                    }
+                    i += 2;
+                }
+                case '(' -> {
+                    if (i + 2 < regex.length() && regex.charAt(i + 1) == '?' &&
+                            ":=!<>".indexOf(regex.charAt(i + 2)) < 0) {
+                        // inline flags may change how the rest of the regular expression matches
+                        break scan;
+                    }
+                    i = skipGroup(regex, i);
+                }
+                case '[' -> {
+                    atomLength = 1;
+                    i = skipClass(regex, i);
+                }
+                case '.' -> {
+                    atomLength = 1;
+                    i++;
+                }
+                case '^', '$' -> i++;
+                case ')', ']', '}' -> {
+                    break scan;
+                }
+                default -> {
+                    if (Character.isHighSurrogate(c)) {
+                        break scan;
+                    }
+                    atomLength = 1;
+                    atomCharacter = 1L << c;
+                    i++;
+                }
+            }
+        }
+        minimumLength += atomLength;
+        requiredCharacters |= atomCharacter;
+        return new FeasibilitySignature((int) Math.min(minimumLength, Integer.MAX_VALUE), requiredCharacters);
+    }
+
+    /**
+     * Return the longer of the best literal so far and the current run, clearing the run.
+     */
+    private static String longer(final String longest, final StringBuilder run) {
+        final String candidate = run.toString();
+        run.setLength(0);
+        return candidate.length() > longest.length() ? candidate : longest;
+    }
+
+    /**
+     * @return The index just past the group starting at the given index
+     */
+    private static int skipGroup(final String regex, final int start) {
+        int depth = 0;
+        int i = start;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                i = skipClass(regex, i);
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return regex.length();
+    }
+
+    /**
+     * @return The index just past the (possibly nested) character class starting at the given index
+     */
+    private static int skipClass(final String regex, final int start) {
+        int depth = 0;
+        int i = start;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+                // a leading ']' (possibly after '^') is part of the class
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                    i++;
+                }
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    i++;
+                }
+            } else if (c == ']' && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return regex.length();
+    }
+
+    /**
+     * Check whether the regular expression is an alternation at its top level (outside of any group or character
+     * class), in which case no literal text is required by every alternative.
+     */
+    private static boolean hasTopLevelAlternation(final String regex) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+                // a leading ']' (possibly after '^') is part of the class
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                    i++;
+                }
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    i++;
+                }
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import java.util.function.Predicate;
+
+/**
+ * Text made up of consecutive segments, such as the literal and translated parts of a Minecraft
+ * {@link net.minecraft.text.Text}, which a {@link NarrationMatcher} can consume segment by segment without joining the
+ * segments into one string first.
+ *
+ * @author Case Walker
+ */
+@FunctionalInterface
+public interface SegmentedText {
+
+    /**
+     * Feed the segments, in order, to the consumer until it returns false.
+     *
+     * @param consumer Consumer of the segments, returning whether it wants any more of them
+     */
+    void forEachSegment(Predicate<String> consumer);
+
+    /**
+     * Join the segments into one string.
+     *
+     * @return The whole text
+     */
+    default String asString() {
+        final StringBuilder builder = new StringBuilder();
+        forEachSegment(segment -> {
+            builder.append(segment);
+            return true;
+        });
+        return builder.toString();
+    }
+
+    /**
+     * Wrap a string as a single segment.
+     *
+     * @param string The whole text
+     * @return The text as a single segment
+     */
+    static SegmentedText of(final String string) {
+        return new SegmentedText() {
+            @Override
+            public void forEachSegment(final Predicate<String> consumer) {
+                consumer.test(string);
+            }
+
+            @Override
+            public String asString() {
+                return string;
+            }
+        };
+    }
+}
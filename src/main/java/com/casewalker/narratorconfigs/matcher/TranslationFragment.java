@@ -0,0 +1,96 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import java.util.Arrays;
+
+/**
+ * A translation parsed into the literal text it requires, with the positions in that text which a placeholder may
+ * precede. This is the unit the {@link NarrationMatcher} automaton is assembled from, and it can be kept and reused for
+ * as long as the translation itself is unchanged.
+ * <p>
+ * Every translation is literal segments separated by placeholders, anchored at the start and open at the end, so no
+ * regular expression is needed to match it.
+ *
+ * @param key Translation key, such as "death.attack.player"
+ * @param translation Translation value, such as "%1$s was slain by %2$s"
+ * @param literal Translation value with all placeholders removed
+ * @param wildcards For each position in the literal (plus one for its end), whether a placeholder precedes it; the end
+ *                  always counts as one, since trailing text is allowed
+ * @author Case Walker
+ */
+record TranslationFragment(String key, String translation, String literal, boolean[] wildcards) {
+
+    /**
+     * Parse a translation, treating all placeholders ("%s", "%d", "%1$s", etc.) as wildcards.
+     *
+     * @param key Translation key
+     * @param translation Translation value
+     * @return The parsed translation
+     */
+    static TranslationFragment parse(final String key, final String translation) {
+        final StringBuilder literal = new StringBuilder(translation.length());
+        final boolean[] wildcards = new boolean[translation.length() + 1];
+        int i = 0;
+        while (i < translation.length()) {
+            final int end = placeholderEnd(translation, i);
+            if (end > 0) {
+                wildcards[literal.length()] = true;
+                i = end;
+            } else {
+                literal.append(translation.charAt(i++));
+            }
+        }
+        // the final state always allows trailing text
+        wildcards[literal.length()] = true;
+        return new TranslationFragment(key, translation, literal.toString(),
+                Arrays.copyOf(wildcards, literal.length() + 1));
+    }
+
+    /**
+     * Find the placeholder ("%s", "%d", "%1$s", etc.) starting at the given index, if there is one.
+     *
+     * @return The index just past the placeholder, or -1 if there is no placeholder at the index
+     */
+    private static int placeholderEnd(final String translation, final int start) {
+        if (translation.charAt(start) != '%') {
+            return -1;
+        }
+        int i = start + 1;
+        while (i < translation.length() && translation.charAt(i) >= '0' && translation.charAt(i) <= '9') {
+            i++;
+        }
+        if (i > start + 1) {
+            // an argument index must be followed by '$'
+            if (i >= translation.length() || translation.charAt(i) != '$') {
+                return -1;
+            }
+            i++;
+        }
+        if (i < translation.length() && (translation.charAt(i) == 's' || translation.charAt(i) == 'd')) {
+            return i + 1;
+        }
+        return -1;
+    }
+}
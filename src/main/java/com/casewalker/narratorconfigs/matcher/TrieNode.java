@@ -0,0 +1,143 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import java.util.Arrays;
+
+/**
+ * Character trie node mapping literals to integer IDs, shared by {@link LiteralPrefixTrie} and {@link AhoCorasick}.
+ * Children are kept sorted by character for binary search. The IDs of a node are replaced rather than modified, so
+ * they can be read and reordered while the trie is being walked from other threads.
+ *
+ * @author Case Walker
+ */
+final class TrieNode {
+
+    private char[] keys = new char[0];
+    private TrieNode[] children = new TrieNode[0];
+    private volatile int[] ids = new int[0];
+
+    /**
+     * Node for the longest proper suffix present in the trie, only set by {@link AhoCorasick#build()}.
+     */
+    TrieNode fail;
+
+    /**
+     * Nearest node along the failure links which ends a literal, only set by {@link AhoCorasick#build()}.
+     */
+    TrieNode output;
+
+    /**
+     * Register an ID under a literal, creating the nodes along the way.
+     *
+     * @param literal Literal text, relative to this node
+     * @param id ID to register
+     */
+    void add(final String literal, final int id) {
+        TrieNode node = this;
+        for (int i = 0; i < literal.length(); i++) {
+            node = node.childOrCreate(literal.charAt(i));
+        }
+        final int[] current = node.ids;
+        final int[] added = Arrays.copyOf(current, current.length + 1);
+        added[current.length] = id;
+        node.ids = added;
+    }
+
+    /**
+     * @return The IDs registered under the literal ending at this node, in the order they are to be visited
+     */
+    int[] ids() {
+        return ids;
+    }
+
+    /**
+     * @return The number of children
+     */
+    int size() {
+        return keys.length;
+    }
+
+    /**
+     * @param index Index of a child, from 0 to {@link #size()}
+     * @return The character leading to the child
+     */
+    char key(final int index) {
+        return keys[index];
+    }
+
+    /**
+     * @param index Index of a child, from 0 to {@link #size()}
+     * @return The child
+     */
+    TrieNode childAt(final int index) {
+        return children[index];
+    }
+
+    /**
+     * @param c Character to follow
+     * @return The child the character leads to, or null if there is none
+     */
+    TrieNode child(final char c) {
+        final int index = Arrays.binarySearch(keys, c);
+        return index >= 0 ? children[index] : null;
+    }
+
+    /**
+     * Move the ID at the given index of the given IDs one place forward, unless the IDs have been reordered since.
+     * The array is replaced rather than modified, so concurrent readers still see every ID exactly once.
+     *
+     * @param current IDs as read by the caller
+     * @param index Index of the ID to move forward
+     */
+    void promote(final int[] current, final int index) {
+        if (index == 0 || ids != current) {
+            return;
+        }
+        final int[] promoted = current.clone();
+        promoted[index - 1] = current[index];
+        promoted[index] = current[index - 1];
+        ids = promoted;
+    }
+
+    private TrieNode childOrCreate(final char c) {
+        int index = Arrays.binarySearch(keys, c);
+        if (index >= 0) {
+            return children[index];
+        }
+        index = -index - 1;
+        final TrieNode child = new TrieNode();
+        final char[] newKeys = new char[keys.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+        newKeys[index] = c;
+        keys = newKeys;
+        final TrieNode[] newChildren = new TrieNode[children.length + 1];
+        System.arraycopy(children, 0, newChildren, 0, index);
+        System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+        newChildren[index] = child;
+        children = newChildren;
+        return child;
+    }
+}
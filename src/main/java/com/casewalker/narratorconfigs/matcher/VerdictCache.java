@@ -0,0 +1,85 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache of accept/reject verdicts by message, counting its hits and misses.
+ *
+ * @author Case Walker
+ */
+final class VerdictCache {
+
+    private final Map<String, Boolean> verdicts;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity Maximum number of verdicts to keep
+     */
+    VerdictCache(final int capacity) {
+        verdicts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Look up a verdict, counting a hit or a miss.
+     *
+     * @param message Message to look up
+     * @return The cached verdict, or null if there is none
+     */
+    synchronized Boolean get(final String message) {
+        final Boolean verdict = verdicts.get(message);
+        if (verdict == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return verdict;
+    }
+
+    /**
+     * Cache a verdict, evicting the least recently used one if the cache is full.
+     *
+     * @param message Message the verdict is for
+     * @param verdict Whether the message is accepted
+     */
+    synchronized void put(final String message, final boolean verdict) {
+        verdicts.put(message, verdict);
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -24,13 +24,29 @@
 package com.casewalker.narratorconfigs.mixin;
 
 import com.casewalker.modutils.config.ConfigHandler;
+import com.casewalker.narratorconfigs.config.ConfigFileWatcher;
 import com.casewalker.narratorconfigs.config.NarratorConfigsModConfig;
 import com.casewalker.narratorconfigs.interfaces.AccessibleTranslationStorage;
 import com.casewalker.modutils.interfaces.Reloadable;
 import com.casewalker.narratorconfigs.interfaces.ForcedNarratorManagerNCM2;
+import com.casewalker.narratorconfigs.interfaces.NarrationMetricsProviderNCM2;
+import com.casewalker.narratorconfigs.interfaces.TranslationsReloadableNCM2;
+import com.casewalker.narratorconfigs.matcher.NarrationFilterSnapshot;
+import com.casewalker.narratorconfigs.matcher.NarrationMatcher;
+import com.casewalker.narratorconfigs.matcher.NarrationMatcherBuilder;
+import com.casewalker.narratorconfigs.matcher.NarrationMatcherCache;
+import com.casewalker.narratorconfigs.matcher.SegmentedText;
+import com.casewalker.narratorconfigs.pipeline.ChatRateLimiter;
+import com.casewalker.narratorconfigs.pipeline.Narration;
+import com.casewalker.narratorconfigs.pipeline.NarrationDeduplicator;
+import com.casewalker.narratorconfigs.pipeline.NarrationMetrics;
+import com.casewalker.narratorconfigs.pipeline.NarrationPipeline;
+import com.casewalker.narratorconfigs.pipeline.NarrationPriorities;
+import com.casewalker.narratorconfigs.pipeline.NarrationScheduler;
 import com.casewalker.narratorconfigs.util.Util;
 import com.google.common.annotations.VisibleForTesting;
 import com.mojang.text2speech.Narrator;
+import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.option.NarratorMode;
 import net.minecraft.client.resource.language.TranslationStorage;
@@ -44,12 +60,17 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.regex.PatternSyntaxException;
 
 import static com.casewalker.narratorconfigs.NarratorConfigsMod.LOGGER;
 import static com.casewalker.narratorconfigs.NarratorConfigsMod.MOD_NAME;
@@ -73,7 +94,13 @@ import static com.casewalker.narratorconfigs.NarratorConfigsMod.MOD_NAME;
  * @author Case Walker
  */
 @Mixin(NarratorManager.class)
-public abstract class NarratorManagerMixinNCM2 implements ForcedNarratorManagerNCM2, Reloadable {
+public abstract class NarratorManagerMixinNCM2
+        implements ForcedNarratorManagerNCM2, TranslationsReloadableNCM2, NarrationMetricsProviderNCM2, Reloadable {
+
+    /**
+     * File in the config directory which keeps the hit counts of the regular expressions between launches.
+     */
+    private static final String HIT_COUNT_FILE = "narratorconfigsmod-hits.bin";
 
     @Shadow
     @Final
@@ -99,57 +126,133 @@ public abstract class NarratorManagerMixinNCM2 implements ForcedNarratorManagerN
     }
 
     /**
-     * Set of acceptable narrations based on the configured enabled prefixes.
+     * The configuration, translations and matcher narrations are currently classified with, built in full before being
+     * swapped in, so narrations can be classified on any thread without locking.
+     */
+    private final AtomicReference<NarrationFilterSnapshot> filter =
+            new AtomicReference<>(NarrationFilterSnapshot.EMPTY);
+
+    /**
+     * Builder keeping the pieces of previously built matchers, so configuration changes only rebuild what changed.
+     */
+    private final NarrationMatcherBuilder narrationMatcherBuilder = new NarrationMatcherBuilder();
+
+    /**
+     * Matchers by language and filter settings, so switching back to a recently used language (or to a configured
+     * secondary language) publishes its matcher right away instead of rebuilding it.
+     */
+    private final NarrationMatcherCache languageMatchers =
+            new NarrationMatcherCache(NarrationMatcherCache.DEFAULT_CAPACITY);
+
+    /**
+     * Builder for the secondary languages, separate from {@link #narrationMatcherBuilder} so that prebuilding neither
+     * undoes its incremental state for the language in use.
+     */
+    private final NarrationMatcherBuilder secondaryMatcherBuilder = new NarrationMatcherBuilder();
+
+    /**
+     * Worker prebuilding the matchers of the secondary languages, created the first time there are any.
+     */
+    private ExecutorService secondaryLanguageBuilder;
+
+    /**
+     * Pipeline classifying and narrating messages off the client thread, or null to do so right away (such as before
+     * initialization).
+     */
+    private NarrationPipeline narrationPipeline;
+
+    /**
+     * Thread making every call which speaks to the narrator, so speech is handed over in one order whichever thread
+     * releases it (the pipeline worker, the rate limiter or the scheduler), or null to speak right away (such as before
+     * initialization).
+     */
+    private ExecutorService narratorDispatcher;
+
+    /**
+     * Filter for screen narrations repeating within the configured window.
+     */
+    private final NarrationDeduplicator narrationDeduplicator = new NarrationDeduplicator();
+
+    /**
+     * Rate limit for chat narrations, so narration keeps up with busy chats.
+     */
+    private final ChatRateLimiter chatRateLimiter = new ChatRateLimiter(this::sayChatMessage);
+
+    /**
+     * Priority lanes in front of the narrator, so important narrations are not stuck behind a long run of others.
+     */
+    private final NarrationScheduler narrationScheduler = new NarrationScheduler(this::speak);
+
+    /**
+     * What the narration filter does and what it costs.
      */
-    private Set<Pattern> acceptedNarrations = Collections.emptySet();
+    private final NarrationMetrics narrationMetrics = new NarrationMetrics();
 
     /**
-     * Configuration.
+     * Configuration, replaced whenever the configuration file changes. Volatile, since it is replaced on the
+     * {@link ConfigFileWatcher} thread; narrations and everything applied after a reload read the configuration from
+     * the published {@link #filter} snapshot instead.
      */
-    private ConfigHandler<NarratorConfigsModConfig> config;
+    private volatile ConfigHandler<NarratorConfigsModConfig> config;
+
+    /**
+     * Watcher reloading the configuration whenever the configuration file changes, or null if the file cannot be
+     * watched (in which case {@link ConfigHandler} reloads it instead).
+     */
+    private volatile ConfigFileWatcher configWatcher;
 
     /**
      * Inject custom logic at the end of {@link NarratorManager#NarratorManager(MinecraftClient)}. This logic will try
      * to construct a set of acceptable narrations by:
      * <ul>
-     *     <li>Filtering all translations by their keys to see if the key matches one of the configured enabled
-     *     prefixes</li>
-     *     <li>Filtering all translations by their keys to see that the key does not match one of the configured
-     *     disabled prefixes</li>
-     *     <li>Tweaking the narrations (translations' values) to replace all placeholders ("%s", "%d", "%1$s", etc.)
-     *     with ".*"</li>
-     *     <li>Adding "^" and "$" characters to the start and end to bound the translations when they become
-     *     patterns</li>
-     *     <li>Converting the altered narration strings into {@link Pattern}s</li>
-     *     <li>Also adding any exactly specified regexes to the narration-testing patterns</li>
+     *     <li>Filtering all translations by their keys to see if the longest configured prefix matching the key is
+     *     one of the enabled prefixes rather than one of the disabled prefixes</li>
+     *     <li>Treating the narrations (translations' values) as literal text where all placeholders ("%s", "%d",
+     *     "%1$s", etc.) match anything, anchored at the start and open at the end</li>
+     *     <li>Combining all of those narrations into one {@link NarrationMatcher}, reusing everything from the
+     *     previous build which the configuration change did not affect</li>
+     *     <li>Also adding any exactly specified regexes to the narration-testing matcher</li>
      * </ul>
+     * If the translations are not loaded yet, the narrations are constructed as soon as they are, through
+     * {@link #reloadTranslations(String, Map)}, which also runs again whenever the translations are reloaded.
      *
      * @param ci {@link CallbackInfo} used by SpongePowered
      */
-    @SuppressWarnings("BusyWait")
     @Inject(method = "<init>*", at = @At("RETURN"))
     public void onInitNCM2(final CallbackInfo ci) {
         LOGGER.info("This line is printed by the Narrator Configs Mod mixin!");
 
         config = new ConfigHandler<>(NarratorConfigsModConfig.class);
         config.initialize();
-        config.registerSubscriber(this);
-
-        // Wait in a separate thread for the TranslationStorage to be loaded
-        new Thread(() -> {
-            Map<String, String> translations = Collections.emptyMap();
-            while (translations.isEmpty()) {
-                try {
-                    LOGGER.info("Sleep before pulling translations...");
-                    Thread.sleep(5000);
-                } catch (InterruptedException e) {
-                    LOGGER.error("Interrupt while waiting to load translations", e);
-                }
-                LOGGER.info("Trying to pull translations...");
-                translations = pullTranslationsFromLanguage();
-            }
-            reload();
-        }).start();
+        // until translations are loaded no game narration is accepted, but chat already follows the configuration
+        publishFilter(config.get(), "", Collections.emptyMap(), NarrationMatcher.EMPTY);
+        watchConfigFile();
+        final Path configDir = FabricLoader.getInstance().getConfigDir();
+        narrationMatcherBuilder.setOverrunLog(LOGGER::warn);
+        narrationMatcherBuilder.setInvalidLog(LOGGER::warn);
+        secondaryMatcherBuilder.setOverrunLog(LOGGER::warn);
+        secondaryMatcherBuilder.setInvalidLog(LOGGER::warn);
+        try {
+            narrationMatcherBuilder.setHitCountFile(configDir.resolve(HIT_COUNT_FILE));
+        } catch (IOException e) {
+            LOGGER.warn("Could not read the regular expression hit counts, starting from none", e);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutDown, MOD_NAME + " shutdown"));
+        narratorDispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, MOD_NAME + " narrator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        narrationPipeline = new NarrationPipeline(MOD_NAME + " narration", this::processNarration);
+        narrationPipeline.setFailureLog(LOGGER::warn);
+        registerGauges();
+        configureNarrationPipeline();
+
+        if (Language.getInstance() instanceof TranslationStorage) {
+            reloadTranslations(currentLanguageCode(), pullTranslationsFromLanguage());
+        } else {
+            LOGGER.info("{} will build accepted narrations once translations are loaded", MOD_NAME);
+        }
     }
 
     /**
@@ -166,12 +269,9 @@ public abstract class NarratorManagerMixinNCM2 implements ForcedNarratorManagerN
             return;
         }
 
-        // Copied mostly from NarratorManager#narrateChatMessage. TODO Why is there no 'this.narrator.active()' check?
-
-        if (config.get().isChatEnabled()) {
-            final String string = messageSupplier.get().getString();
-            this.debugPrintMessage(string);
-            this.narrator.say(string, false);
+        if (filter.get().config().isChatEnabled()) {
+            // the message is built here on the client thread, where the language cannot change underneath it
+            submitNarration(new Narration(Util.segmentsOf(messageSupplier.get()), false, Narration.Source.CHAT));
         }
 
         // If the mixin was called with the right NarratorMode, then cancel the call to narrateChatMessage
@@ -192,42 +292,504 @@ public abstract class NarratorManagerMixinNCM2 implements ForcedNarratorManagerN
             return;
         }
 
-        // Check that the text to narrate is not empty and matches one of the narrations extrapolated from the config
-        if (!text.isEmpty() && narrationIsAccepted(text)) {
-            debugPrintMessage(text);
-            if (narrator.active()) {
-                narrator.clear();
-                narrator.say(text, true);
-            }
+        if (!text.isEmpty()) {
+            submitNarration(new Narration(SegmentedText.of(text), true, Narration.Source.SYSTEM));
         }
         // If the mixin was called with the right NarratorMode, then cancel the call to NarratorManager#narrate
         ci.cancel();
     }
 
+    /**
+     * {@inheritDoc} When narrations are queued, the game message is claimed as soon as the mode is right, since it is
+     * only classified later on; rejected game messages are then not narrated at all, just like rejected system
+     * narrations.
+     */
     @Override
     public boolean forceNarrateOnMode(final Text text) {
-        final String string = text.getString();
+        if (!narratorModeIsCustomNarration()) {
+            return false;
+        }
+        final Narration narration = new Narration(
+                Util.segmentsOf(text), false, Narration.Source.GAME, Util.translationKeyOf(text));
+        narrationMetrics.recordSeen(narration.source());
+        if (narrationPipeline == null || !narrationPipeline.isQueued()) {
+            return processNarration(narration);
+        }
+        narrationPipeline.submit(narration);
+        return true;
+    }
 
-        if (narratorModeIsCustomNarration() && narrationIsAccepted(string)) {
-            this.narrator.say(text.getString(), false);
-            return true;
+    /**
+     * Hand a narration to the pipeline, or process it right away if there is no pipeline.
+     *
+     * @param narration Narration to process
+     */
+    private void submitNarration(final Narration narration) {
+        narrationMetrics.recordSeen(narration.source());
+        if (narrationPipeline == null) {
+            processNarration(narration);
+        } else {
+            narrationPipeline.submit(narration);
+        }
+    }
+
+    /**
+     * Classify a narration and narrate it if it is accepted. This runs on the narration pipeline's worker thread,
+     * unless narrations are not queued, and the narration is then spoken on the dispatch thread.
+     *
+     * @param narration Narration to process
+     * @return Whether the narration was narrated
+     */
+    @VisibleForTesting
+    protected boolean processNarration(final Narration narration) {
+        switch (narration.source()) {
+            case CHAT -> {
+                // flattened once, and the same string is classified and narrated
+                final String string = narration.message().asString();
+                final NarrationScheduler.Priority priority = filter.get().priorities().of(
+                        new Narration(SegmentedText.of(string), false, Narration.Source.CHAT));
+                // high priority chat messages (such as whispers) skip the rate limit along with the rest of the chat
+                if (priority == NarrationScheduler.Priority.HIGH) {
+                    sayChatMessage(string, priority);
+                } else {
+                    chatRateLimiter.submit(string, priority);
+                }
+                return true;
+            }
+            case SYSTEM -> {
+                final NarrationFilterSnapshot current = filter.get();
+                final String string = narration.message().asString();
+                // Check that the text matches one of the narrations extrapolated from the config, going through the
+                // verdict cache since screens send the same narrations over and over
+                final long start = System.nanoTime();
+                final boolean accepted = current.matcher().matchesCached(string);
+                narrationMetrics.recordVerdict(narration.source(), accepted, System.nanoTime() - start);
+                if (!accepted) {
+                    return false;
+                }
+                // restarting the very same utterance over and over only keeps the speech engine busy
+                if (narrationDeduplicator.isRepeat(string)) {
+                    return false;
+                }
+                debugPrintMessage(string);
+                if (narrator.active()) {
+                    narrationScheduler.submit(string, current.priorities().of(narration), narration.interrupt());
+                }
+                return true;
+            }
+            default -> {
+                // game messages are matched segment by segment (or only by key if they are translations), so rejected
+                // ones are never flattened into a string
+                final long start = System.nanoTime();
+                final boolean accepted = narrationIsAccepted(narration);
+                narrationMetrics.recordVerdict(narration.source(), accepted, System.nanoTime() - start);
+                if (!accepted) {
+                    return false;
+                }
+                narrationScheduler.submit(narration.message().asString(), filter.get().priorities().of(narration),
+                        narration.interrupt());
+                return true;
+            }
         }
-        return false;
     }
 
+    @Override
+    public NarrationMetrics getNarrationMetrics() {
+        return narrationMetrics;
+    }
 
     /**
-     * Reload accepted narrations in the event that when the class was instantiated, the {@link Language} was not
-     * properly set, or the mod configuration file was updated and this class is being reloaded as its subscriber.
+     * Reload accepted narrations in the event that the mod configuration file was updated, either as noticed by the
+     * {@link ConfigFileWatcher} or, if the file cannot be watched, with this class being reloaded as a subscriber. The
+     * configuration is read under the same lock as every other rebuild, so it cannot be replaced halfway through.
      */
     @Override
-    public void reload() {
-        final Map<String, String> translations = pullTranslationsFromLanguage();
-        acceptedNarrations = createAcceptedNarrations(translations);
+    public synchronized void reload() {
+        rebuildForConfig(config.get());
+        announceReload();
+    }
+
+    /**
+     * Rebuild accepted narrations for a changed configuration, from the translations of the current snapshot (or, if
+     * there are none yet, from the loaded language).
+     *
+     * @param currentConfig Configuration to build the accepted narrations for
+     */
+    private void rebuildForConfig(final NarratorConfigsModConfig currentConfig) {
+        final NarrationFilterSnapshot current = filter.get();
+        String language = current.language();
+        Map<String, String> translations = current.translations();
+        if (translations.isEmpty()) {
+            language = currentLanguageCode();
+            translations = pullTranslationsFromLanguage();
+        }
+        rebuildAcceptedNarrations(currentConfig, language, translations);
+    }
+
+    /**
+     * Apply the rest of the configuration once accepted narrations were rebuilt for it, and announce the update.
+     */
+    private void announceReload() {
+        configureNarrationPipeline();
         if (!narrator.active()) {
-            debugPrintMessage("Updated configuration: " + config.get());
+            debugPrintMessage("Updated configuration: " + filter.get().config());
+        } else {
+            // spoken in turn like any other narration, rather than from the config watcher thread
+            narrationScheduler.submit("Narrator configuration has updated from the config file",
+                    NarrationScheduler.Priority.NORMAL, false);
+        }
+    }
+
+    /**
+     * Watch the configuration file, so that changes are picked up without holding up the game. If the file cannot be
+     * watched, {@link ConfigHandler} is relied on to call {@link #reload()} instead.
+     */
+    private void watchConfigFile() {
+        try {
+            configWatcher = new ConfigFileWatcher(config.get().getDefaultConfigPaths(),
+                    ConfigFileWatcher.DEFAULT_DEBOUNCE_MILLIS, this::reloadConfigFile, MOD_NAME + " config watcher");
+            configWatcher.setFailureLog(LOGGER::warn);
+        } catch (IOException e) {
+            LOGGER.warn("Could not watch the configuration file, relying on {} to reload it",
+                    ConfigHandler.class.getSimpleName(), e);
+            config.registerSubscriber(this);
+        }
+    }
+
+    /**
+     * Parse the configuration file after it changed, and reload only if the configuration itself changed. This runs
+     * on the {@link ConfigFileWatcher} thread, so the game keeps going while the new matcher is built. The parsed
+     * configuration only replaces the current one once accepted narrations were built for it, so a configuration
+     * which cannot be built leaves the current configuration and matcher in place together, and saving the file again
+     * retries it.
+     */
+    private synchronized void reloadConfigFile() {
+        final ConfigHandler<NarratorConfigsModConfig> parsed = new ConfigHandler<>(NarratorConfigsModConfig.class);
+        try {
+            parsed.initialize();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not read the changed configuration file, keeping the current configuration", e);
+            return;
+        }
+        if (parsed.get().equals(config.get())) {
+            LOGGER.info("{} configuration file changed, but the configuration is the same", MOD_NAME);
+            return;
+        }
+        try {
+            rebuildForConfig(parsed.get());
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not build accepted narrations for the changed configuration, keeping the current " +
+                    "configuration", e);
+            return;
+        }
+        config = parsed;
+        announceReload();
+    }
+
+    /**
+     * Rebuild accepted narrations as soon as the {@link TranslationStorage} has loaded translations, whether on
+     * startup, on a language change or on a resource pack reload. Switching to a language whose matcher is cached for
+     * the current configuration publishes that matcher without building anything. The configuration is only read once
+     * the lock is held, so a configuration being applied by {@link #reloadConfigFile()} is waited for rather than
+     * overwritten by a snapshot built for the configuration it replaces.
+     *
+     * @param language Code of the language the translations are in, such as "en_us"
+     * @param translations Map of keys and values such as in en_us.json
+     */
+    @Override
+    public synchronized void reloadTranslations(final String language, final Map<String, String> translations) {
+        rebuildAcceptedNarrations(config.get(), language, translations);
+    }
+
+    /**
+     * Build accepted narrations from the given translations and configuration, or take them from the language cache,
+     * and publish them along with the configuration and translations as the next filter snapshot. The matchers of the
+     * secondary languages are then prebuilt in the background.
+     *
+     * @param currentConfig Configuration to build the accepted narrations for
+     * @param language Code of the language the translations are in, such as "en_us"
+     * @param translations Map of keys and values such as in en_us.json
+     */
+    private synchronized void rebuildAcceptedNarrations(
+            final NarratorConfigsModConfig currentConfig,
+            final String language,
+            final Map<String, String> translations) {
+        final long start = System.nanoTime();
+        final NarratorConfigsModConfig.FilterSettings settings = currentConfig.getFilterSettings();
+        final NarrationMatcherCache.Entry cached = languageMatchers.get(language, settings, translations);
+        final NarrationMatcher matcher;
+        final NarrationPriorities priorities;
+        if (cached == null) {
+            matcher = createAcceptedNarrations(currentConfig, translations);
+            priorities = createNarrationPriorities(currentConfig, translations);
+            languageMatchers.put(language, settings, translations, matcher, priorities);
         } else {
-            narrator.say("Narrator configuration has updated from the config file", false);
+            matcher = cached.matcher();
+            priorities = cached.priorities();
+            LOGGER.info("accepted narrations: {} patterns, already built for {}", matcher.size(), language);
+        }
+        // the verdict cache belongs to the matcher, so it is replaced along with it
+        final NarrationFilterSnapshot previous =
+                publishFilter(currentConfig, language, translations, matcher, priorities);
+        narrationMetrics.recordReload(System.nanoTime() - start);
+        final NarrationMatcher previousMatcher = previous.matcher();
+        LOGGER.info("Narration cache had {} hits and {} misses before reloading, and {} regular expressions and {} " +
+                        "automaton states had been materialized in filter version {}",
+                previousMatcher.getCacheHits(), previousMatcher.getCacheMisses(),
+                previousMatcher.getMaterializedPatterns(), previousMatcher.getDeterminizedStates(),
+                previous.version());
+        prebuildSecondaryLanguages(currentConfig, language);
+    }
+
+    /**
+     * Build the matchers of the configured secondary languages which are not cached yet, on a background thread, so
+     * that switching to one of them is instant. The translations are loaded on the client thread, which owns the
+     * resource manager, and only the matchers are built in the background. They are cached under the filter settings
+     * they were built from, so a configuration change in the meantime cannot make them stale.
+     *
+     * @param currentConfig Configuration to build the accepted narrations for
+     * @param activeLanguage Code of the language in use, which was just built
+     */
+    private void prebuildSecondaryLanguages(final NarratorConfigsModConfig currentConfig, final String activeLanguage) {
+        final NarratorConfigsModConfig.FilterSettings settings = currentConfig.getFilterSettings();
+        final List<String> languages = currentConfig.getSecondaryLanguages().stream()
+                .filter(language -> !language.equals(activeLanguage) && !languageMatchers.contains(language, settings))
+                .toList();
+        final MinecraftClient client = MinecraftClient.getInstance();
+        if (languages.isEmpty() || client == null || client.getLanguageManager() == null) {
+            return;
+        }
+        if (!client.isOnThread()) {
+            // a configuration reload rebuilds on the config watcher thread, which must not read the resource manager
+            client.execute(() -> prebuildSecondaryLanguages(currentConfig, activeLanguage));
+            return;
+        }
+        final Map<String, Map<String, String>> secondaryTranslations = new LinkedHashMap<>();
+        for (final String language : languages) {
+            if (client.getLanguageManager().getLanguage(language) == null) {
+                LOGGER.warn("Secondary language {} is not available, not building accepted narrations for it",
+                        language);
+                continue;
+            }
+            try {
+                secondaryTranslations.put(language, Util.loadTranslations(client.getResourceManager(), language));
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Could not load the translations of secondary language {}", language, e);
+            }
+        }
+        if (secondaryTranslations.isEmpty()) {
+            return;
+        }
+        if (secondaryLanguageBuilder == null) {
+            secondaryLanguageBuilder = Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, MOD_NAME + " secondary languages");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        secondaryLanguageBuilder.execute(() -> secondaryTranslations.forEach((language, translations) -> {
+            try {
+                final long start = System.nanoTime();
+                final NarrationMatcher matcher = buildMatcher(secondaryMatcherBuilder, currentConfig, translations);
+                languageMatchers.put(language, settings, translations, matcher,
+                        createNarrationPriorities(currentConfig, translations));
+                LOGGER.info("accepted narrations: {} patterns, prebuilt for {} in {} ms", matcher.size(),
+                        language, (System.nanoTime() - start) / 1_000_000);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not prebuild accepted narrations for secondary language {}", language, e);
+            }
+        }));
+    }
+
+    /**
+     * @return The code of the language in use, such as "en_us", or an empty string if the client is not set up yet
+     */
+    private static String currentLanguageCode() {
+        final MinecraftClient client = MinecraftClient.getInstance();
+        if (client == null || client.getLanguageManager() == null) {
+            return "";
+        }
+        return client.getLanguageManager().getLanguage().getCode();
+    }
+
+    /**
+     * Publish the next filter snapshot, giving every narration normal priority.
+     *
+     * @param currentConfig Configuration the matcher was built for
+     * @param language Code of the language the translations are in, such as "en_us"
+     * @param translations Translations the matcher was built from
+     * @param matcher Matcher built from the configuration and translations
+     * @return The snapshot which was replaced
+     */
+    @VisibleForTesting
+    protected NarrationFilterSnapshot publishFilter(
+            final NarratorConfigsModConfig currentConfig,
+            final String language,
+            final Map<String, String> translations,
+            final NarrationMatcher matcher) {
+        return publishFilter(currentConfig, language, translations, matcher, NarrationPriorities.NONE);
+    }
+
+    /**
+     * Publish the next filter snapshot with a single swap, so narrations are classified with either the previous
+     * snapshot or the next one as a whole.
+     *
+     * @param currentConfig Configuration the matcher and priorities were built for
+     * @param language Code of the language the translations are in, such as "en_us"
+     * @param translations Translations the matcher and priorities were built from
+     * @param matcher Matcher built from the configuration and translations
+     * @param priorities Priorities built from the configuration and translations
+     * @return The snapshot which was replaced
+     */
+    private synchronized NarrationFilterSnapshot publishFilter(
+            final NarratorConfigsModConfig currentConfig,
+            final String language,
+            final Map<String, String> translations,
+            final NarrationMatcher matcher,
+            final NarrationPriorities priorities) {
+        final NarrationFilterSnapshot previous = filter.get();
+        filter.set(previous.next(currentConfig, language, translations, matcher, priorities));
+        return previous;
+    }
+
+    /**
+     * Build the priorities of accepted narrations from the given translations and configuration.
+     *
+     * @param currentConfig Configuration holding the high and low priority prefixes and regular expressions
+     * @param translations Map of keys and values such as in en_us.json
+     * @return The priorities, which give every narration normal priority if a regular expression is invalid
+     */
+    private NarrationPriorities createNarrationPriorities(
+            final NarratorConfigsModConfig currentConfig,
+            final Map<String, String> translations) {
+        try {
+            return NarrationPriorities.build(translations,
+                    currentConfig.getHighPriorityPrefixes(),
+                    currentConfig.getHighPriorityRegularExpressions(),
+                    currentConfig.getLowPriorityPrefixes(),
+                    currentConfig.getLowPriorityRegularExpressions());
+        } catch (PatternSyntaxException e) {
+            LOGGER.warn("Invalid priority regular expression, narrating everything with normal priority", e);
+            return NarrationPriorities.NONE;
+        }
+    }
+
+    /**
+     * Narrate a chat message once the rate limit allows it.
+     *
+     * @param string Chat message
+     * @param priority Priority of the chat message
+     */
+    private void sayChatMessage(final String string, final NarrationScheduler.Priority priority) {
+        // Copied mostly from NarratorManager#narrateChatMessage, which has no 'this.narrator.active()' check either:
+        // an inactive narrator simply ignores what it is told to say, and the tests pin chat narration as is
+        debugPrintMessage(string);
+        narrationScheduler.submit(string, priority, false);
+    }
+
+    /**
+     * Hand a narration to the narrator once the {@link NarrationScheduler} gives it its turn. The narrator is called
+     * on the dispatch thread, in the order narrations are handed over, so this never waits for the speech engine.
+     *
+     * @param string Message to narrate
+     * @param interrupt Whether to clear whatever is being narrated first
+     */
+    private void speak(final String string, final boolean interrupt) {
+        if (narratorDispatcher == null) {
+            say(string, interrupt);
+            return;
+        }
+        narratorDispatcher.execute(() -> {
+            try {
+                say(string, interrupt);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not narrate a message", e);
+            }
+        });
+    }
+
+    /**
+     * See {@link #speak(String, boolean)}.
+     *
+     * @param string Message to narrate
+     * @param interrupt Whether to clear whatever is being narrated first
+     */
+    private void say(final String string, final boolean interrupt) {
+        if (interrupt) {
+            narrator.clear();
+        }
+        narrator.say(string, interrupt);
+    }
+
+    /**
+     * Register the gauges reported along with the narration metrics.
+     */
+    private void registerGauges() {
+        narrationMetrics.registerGauge("filterVersion", () -> filter.get().version());
+        narrationMetrics.registerGauge("patterns", () -> filter.get().matcher().size());
+        narrationMetrics.registerGauge("compiledRegexes", () -> filter.get().matcher().getMaterializedPatterns());
+        narrationMetrics.registerGauge("regexOverruns", () -> filter.get().matcher().getRegexOverruns());
+        narrationMetrics.registerGauge("cachedLanguages", languageMatchers::size);
+        narrationMetrics.registerGauge("languageCacheHits", languageMatchers::getHits);
+        narrationMetrics.registerGauge("queued", narrationPipeline::getQueued);
+        narrationMetrics.registerGauge("queueDropped", narrationPipeline::getDropped);
+        narrationMetrics.registerGauge("suppressedRepeats", narrationDeduplicator::getSuppressed);
+        narrationMetrics.registerGauge("chatBacklog", chatRateLimiter::getBacklog);
+        narrationMetrics.registerGauge("chatDropped", chatRateLimiter::getDropped);
+        narrationMetrics.registerGauge("laneWaiting", narrationScheduler::getWaiting);
+        narrationMetrics.registerGauge("laneDropped", narrationScheduler::getDropped);
+        narrationMetrics.registerGauge("interruptions", narrationScheduler::getInterrupted);
+        narrationMetrics.registerGauge("highPriorityMaxWaitMillis",
+                () -> narrationScheduler.getMaxWait(NarrationScheduler.Priority.HIGH) / 1_000_000);
+    }
+
+    /**
+     * Apply the configured queue size, drop policy, dedupe window, chat rate limit and priority lanes to the narration
+     * pipeline, the configured interval to the periodic metrics log, and the configured size to the language cache.
+     */
+    private void configureNarrationPipeline() {
+        final NarratorConfigsModConfig currentConfig = filter.get().config();
+        languageMatchers.setCapacity(currentConfig.getLanguageCacheSize());
+        narrationMetrics.setLogInterval(currentConfig.getMetricsLogIntervalSeconds(),
+                line -> LOGGER.info("{}", line));
+        narrationDeduplicator.setWindowMillis(currentConfig.getNarrationDedupeWindowMillis());
+        chatRateLimiter.configure(currentConfig.getChatNarrationRate(), currentConfig.getChatNarrationBurst(),
+                currentConfig.getChatOverflowPolicy());
+        // without any priorities every narration is in the same lane, so narrations go straight to the narrator
+        final double speechRate = currentConfig.hasNarrationPriorities() ? currentConfig.getNarrationSpeechRate() : 0;
+        narrationScheduler.configure(speechRate, currentConfig.getNarrationLaneSize(),
+                currentConfig.isInterruptLowerPriority());
+        if (narrationPipeline != null) {
+            narrationPipeline.configure(currentConfig.getNarrationQueueSize(), currentConfig.getNarrationDropPolicy());
+            LOGGER.info("narration pipeline: {}, suppressed repeats: {}, chat: {}, lanes: {}",
+                    narrationPipeline, narrationDeduplicator.getSuppressed(), chatRateLimiter, narrationScheduler);
+        }
+    }
+
+    /**
+     * Save the hit counts and stop watching the configuration file as the game exits.
+     */
+    private void shutDown() {
+        saveHitCounts();
+        if (configWatcher != null) {
+            try {
+                configWatcher.close();
+            } catch (IOException e) {
+                LOGGER.warn("Could not stop watching the configuration file", e);
+            }
+        }
+    }
+
+    /**
+     * Save the hit counts of the regular expressions, so the next session tries the most frequent ones first. The hits
+     * of the matchers prebuilt for the secondary languages count as well. This is only done as the game exits, since
+     * the counts only matter to the next session and rebuilding keeps the hits counted so far in memory.
+     */
+    private void saveHitCounts() {
+        try {
+            narrationMatcherBuilder.saveHitCounts(secondaryMatcherBuilder);
+        } catch (IOException e) {
+            LOGGER.warn("Could not save the regular expression hit counts", e);
         }
     }
 
@@ -258,54 +820,74 @@ public abstract class NarratorManagerMixinNCM2 implements ForcedNarratorManagerN
      * @return Translations combined and manipulated based on configurations
      */
     @VisibleForTesting
-    protected Set<Pattern> createAcceptedNarrations(final Map<String, String> translations) {
-
-        final Set<Pattern> output = translations.entrySet().stream()
-                // filter in all enabled prefixes
-                .filter(entry -> config.get().getEnabledPrefixes().stream()
-                                .anyMatch(enabledPrefix -> entry.getKey().startsWith(enabledPrefix)))
-                // filter out any disabled prefixes
-                .filter(entry -> config.get().getDisabledPrefixes().stream()
-                                .noneMatch(disabledPrefix -> entry.getKey().startsWith(disabledPrefix)))
-                .map(Map.Entry::getValue)
-                // escape all special characters in the language translations
-                .map(translation -> translation.replaceAll("([]\\[.()^$*+?{}|])", "\\\\$1"))
-                // replace all placeholders (accounting for escapes added above) like '%s' with the regex '.*'
-                .map(translation -> translation.replaceAll("%(\\d+\\\\[$])?[sd]", ".*"))
-                // encase the string as a pattern with a beginning and a wildcard end
-                .map(translationPattern -> "^" + translationPattern + ".*")
-                // finally Pattern.compile() and collect
-                .map(Pattern::compile)
-                .collect(Collectors.toSet());
-
-        // add all configured Enabled Regular Expressions to the accepted narration matchers
-        output.addAll(
-                config.get().getEnabledRegularExpressions().stream().map(Pattern::compile).collect(Collectors.toList())
-        );
-
-        LOGGER.info("accepted narrations: {}", output);
+    protected NarrationMatcher createAcceptedNarrations(final Map<String, String> translations) {
+        return createAcceptedNarrations(config.get(), translations);
+    }
+
+    /**
+     * See {@link #createAcceptedNarrations(Map)}.
+     *
+     * @param currentConfig Configuration to build the accepted narrations for
+     * @param translations Map of keys and values such as in en_us.json
+     * @return Translations combined and manipulated based on configurations
+     */
+    private NarrationMatcher createAcceptedNarrations(
+            final NarratorConfigsModConfig currentConfig,
+            final Map<String, String> translations) {
+
+        final NarrationMatcher output = buildMatcher(narrationMatcherBuilder, currentConfig, translations);
+
+        LOGGER.info("accepted narrations: {} patterns, built by {}", output.size(), narrationMatcherBuilder);
+        LOGGER.debug("accepted narrations: {}", output);
         return output;
     }
 
+    /**
+     * Build accepted narrations with the given builder.
+     *
+     * @param builder Builder keeping the pieces of the matchers it built before
+     * @param currentConfig Configuration to build the accepted narrations for
+     * @param translations Map of keys and values such as in en_us.json
+     * @return Translations combined and manipulated based on configurations
+     */
+    private static NarrationMatcher buildMatcher(
+            final NarrationMatcherBuilder builder,
+            final NarratorConfigsModConfig currentConfig,
+            final Map<String, String> translations) {
+        // filter the translations by prefix and combine them with all configured Enabled Regular Expressions into a
+        // single matcher, only redoing the work for prefixes and regexes which changed since the last build
+        return builder.build(
+                translations,
+                currentConfig.getEnabledPrefixes(),
+                currentConfig.getDisabledPrefixes(),
+                currentConfig.getEnabledRegularExpressions(),
+                currentConfig.getNarrationCacheSize(),
+                currentConfig.isLazyRegularExpressions());
+    }
+
     /**
      * Check whether a narration is accepted given the consumed translations and mod configurations.
      *
-     * @param string Message to possibly be narrated
+     * @param narration Narration to possibly be narrated
      * @return Whether the narration is accepted
      */
-    private boolean narrationIsAccepted(final String string) {
-        return narrationIsAccepted(acceptedNarrations, string);
+    private boolean narrationIsAccepted(final Narration narration) {
+        final NarrationMatcher acceptedNarrations = filter.get().matcher();
+        if (narration.translationKey() != null) {
+            return acceptedNarrations.matchesTranslation(narration.translationKey(), narration.message());
+        }
+        return acceptedNarrations.matches(narration.message());
     }
 
     /**
-     * See {@link #narrationIsAccepted(String)}.
+     * See {@link #narrationIsAccepted(Narration)}.
      *
-     * @param acceptedNarrations Patterns to check the message against
+     * @param acceptedNarrations Matcher to check the message against
      * @param string Message to possibly be narrated
      * @return Whether the narration is accepted
      */
     @VisibleForTesting
-    protected boolean narrationIsAccepted(final Set<Pattern> acceptedNarrations, final String string) {
-        return acceptedNarrations.stream().anyMatch(pattern -> pattern.matcher(string).matches());
+    protected boolean narrationIsAccepted(final NarrationMatcher acceptedNarrations, final String string) {
+        return acceptedNarrations.matches(string);
     }
 }
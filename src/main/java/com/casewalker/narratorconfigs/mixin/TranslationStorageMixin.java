@@ -24,15 +24,24 @@
 package com.casewalker.narratorconfigs.mixin;
 
 import com.casewalker.narratorconfigs.interfaces.AccessibleTranslationStorage;
+import com.casewalker.narratorconfigs.interfaces.TranslationsReloadableNCM2;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.resource.language.LanguageDefinition;
 import net.minecraft.client.resource.language.TranslationStorage;
+import net.minecraft.resource.ResourceManager;
 import net.minecraft.util.Language;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.gen.Accessor;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
+import java.util.List;
 import java.util.Map;
 
 /**
- * Mixin targeting the {@link TranslationStorage} class in order to make the map of translations externally accessible.
+ * Mixin targeting the {@link TranslationStorage} class in order to make the map of translations externally accessible,
+ * and to hand newly loaded translations over to the {@link net.minecraft.client.util.NarratorManager}.
  *
  * @author Case Walker
  */
@@ -42,4 +51,28 @@ public abstract class TranslationStorageMixin extends Language implements Access
     @Override
     @Accessor("translations")
     public abstract Map<String, String> getTranslations();
+
+    /**
+     * Inject at the end of {@link TranslationStorage#load(ResourceManager, List)}, which runs on startup, on a
+     * language change and on a resource pack reload, to pass the new translations to the narrator manager right away.
+     *
+     * @param resourceManager ResourceManager used in the parent method
+     * @param definitions Languages used in the parent method
+     * @param cir CallbackInfoReturnable used by SpongePowered, holding the loaded TranslationStorage
+     */
+    @Inject(method = "load", at = @At("RETURN"))
+    private static void onLoadNCM2(
+            final ResourceManager resourceManager,
+            final List<LanguageDefinition> definitions,
+            final CallbackInfoReturnable<TranslationStorage> cir) {
+
+        final MinecraftClient client = MinecraftClient.getInstance();
+        // the narrator manager may not exist yet, in which case it pulls the translations itself once it does
+        if (client != null && client.getNarratorManager() != null) {
+            // the selected language is loaded last, on top of the default one
+            final String language = definitions.isEmpty() ? "" : definitions.get(definitions.size() - 1).getCode();
+            ((TranslationsReloadableNCM2) client.getNarratorManager()).reloadTranslations(
+                    language, ((AccessibleTranslationStorage) cir.getReturnValue()).getTranslations());
+        }
+    }
 }
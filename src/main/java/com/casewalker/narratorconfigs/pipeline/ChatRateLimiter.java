@@ -0,0 +1,349 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.pipeline;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket limiting how many chat messages are narrated, so that narration never falls far behind a busy chat.
+ * <p>
+ * Each narrated message takes a token. Tokens refill at a steady rate up to the burst size. A message arriving with no
+ * token left overflows, and the {@link OverflowPolicy} decides what happens next. It may wait in a backlog no larger
+ * than the burst size, which drops either its oldest or the newest message once full. Or it may only be counted, and
+ * the count is narrated as one summary once a token is free. Either way, no message is narrated later than a burst's
+ * worth of tokens after it arrived. Each message keeps the priority it was submitted with, and a summary takes the
+ * highest priority of the messages it stands for.
+ * <p>
+ * The speaker is called while holding the lock of the limiter, so messages released by different threads (a new
+ * message on one, a scheduled flush on another) reach it in the order they were taken. The speaker must therefore
+ * only hand messages on, never wait for the narrator to speak them.
+ *
+ * @author Case Walker
+ */
+public class ChatRateLimiter {
+
+    /**
+     * What to do with chat messages arriving when no token is left.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Keep the message in the backlog, dropping the oldest backlogged message if the backlog is full.
+         */
+        DROP_OLDEST,
+        /**
+         * Keep the message in the backlog, unless the backlog is full, in which case the message is dropped.
+         */
+        DROP_NEWEST,
+        /**
+         * Drop the message, but count it, narrating the count as soon as a token is free.
+         */
+        SUMMARIZE;
+
+        /**
+         * Parse an overflow policy case-insensitively.
+         *
+         * @param name Name of the overflow policy, such as "summarize"
+         * @param defaultPolicy Policy to return if the name is null or unknown
+         * @return The overflow policy
+         */
+        public static OverflowPolicy parse(final String name, final OverflowPolicy defaultPolicy) {
+            if (name == null) {
+                return defaultPolicy;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (final IllegalArgumentException e) {
+                return defaultPolicy;
+            }
+        }
+    }
+
+    /**
+     * Default number of chat messages narrated per second, on average, where 0 means chat is not limited.
+     */
+    public static final double DEFAULT_RATE = 0;
+
+    /**
+     * Default number of chat messages which may be narrated in a row.
+     */
+    public static final int DEFAULT_BURST = 5;
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final BiConsumer<String, NarrationScheduler.Priority> speaker;
+    private final boolean scheduling;
+    private final LongSupplier clock;
+    private final Deque<Chat> backlog = new ArrayDeque<>();
+    private ScheduledExecutorService scheduler;
+    private boolean flushScheduled;
+
+    private double rate = DEFAULT_RATE;
+    private int burst = DEFAULT_BURST;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.SUMMARIZE;
+    private double tokens = DEFAULT_BURST;
+    private long lastRefill;
+    private int overflowed;
+    private NarrationScheduler.Priority overflowedPriority = NarrationScheduler.Priority.LOW;
+    private long dropped;
+
+    /**
+     * Create a rate limiter narrating backlogged messages and summaries by itself as tokens become free.
+     *
+     * @param speaker Consumer narrating a chat message with its priority
+     */
+    public ChatRateLimiter(final BiConsumer<String, NarrationScheduler.Priority> speaker) {
+        this(speaker, true);
+    }
+
+    /**
+     * @param speaker Consumer narrating a chat message with its priority
+     * @param scheduling Whether to narrate backlogged messages and summaries by itself, rather than only when
+     *                   {@link #flush(long)} is called
+     */
+    ChatRateLimiter(final BiConsumer<String, NarrationScheduler.Priority> speaker, final boolean scheduling) {
+        this(speaker, scheduling, System::nanoTime);
+    }
+
+    /**
+     * @param speaker Consumer narrating a chat message with its priority
+     * @param scheduling Whether to narrate backlogged messages and summaries by itself, rather than only when
+     *                   {@link #flush(long)} is called
+     * @param clock Current time in nanoseconds, as in {@link System#nanoTime()}
+     */
+    ChatRateLimiter(
+            final BiConsumer<String, NarrationScheduler.Priority> speaker,
+            final boolean scheduling,
+            final LongSupplier clock) {
+        this.speaker = speaker;
+        this.scheduling = scheduling;
+        this.clock = clock;
+        this.lastRefill = clock.getAsLong();
+    }
+
+    /**
+     * Change the rate limit. The backlog is trimmed to the new burst size.
+     *
+     * @param rate Number of chat messages narrated per second, on average, where 0 (or less) removes the limit
+     * @param burst Number of chat messages which may be narrated in a row
+     * @param overflowPolicy What to do with chat messages arriving when no token is left
+     */
+    public synchronized void configure(final double rate, final int burst, final OverflowPolicy overflowPolicy) {
+        refill(clock.getAsLong());
+        this.rate = rate;
+        this.burst = Math.max(1, burst);
+        this.overflowPolicy = overflowPolicy;
+        tokens = Math.min(tokens, this.burst);
+        if (rate <= 0) {
+            // without a limit, whatever is waiting can be narrated right away
+            tokens = backlog.size() + 1;
+            speak(drain(lastRefill));
+            tokens = this.burst;
+        }
+        while (backlog.size() > this.burst) {
+            backlog.removeFirst();
+            dropped++;
+        }
+    }
+
+    /**
+     * Narrate a chat message now if a token is free, and otherwise handle it according to the overflow policy.
+     *
+     * @param message Chat message
+     * @param priority Priority of the chat message, which it is narrated with
+     */
+    public void submit(final String message, final NarrationScheduler.Priority priority) {
+        submit(message, priority, clock.getAsLong());
+    }
+
+    /**
+     * See {@link #submit(String, NarrationScheduler.Priority)}.
+     *
+     * @param message Chat message
+     * @param priority Priority of the chat message, which it is narrated with
+     * @param now Current time in nanoseconds, as in {@link System#nanoTime()}
+     */
+    synchronized void submit(final String message, final NarrationScheduler.Priority priority, final long now) {
+        speak(accept(new Chat(message, priority), now));
+    }
+
+    /**
+     * Narrate backlogged messages, or the summary of overflowed messages, for as long as tokens are free.
+     *
+     * @param now Current time in nanoseconds, as in {@link System#nanoTime()}
+     */
+    synchronized void flush(final long now) {
+        speak(drain(now));
+    }
+
+    /**
+     * @return The number of chat messages not narrated (on their own) because of the rate limit
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return The number of chat messages waiting for a token
+     */
+    public synchronized int getBacklog() {
+        return backlog.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ChatRateLimiter{rate=" + rate +
+                ", burst=" + burst +
+                ", overflowPolicy=" + overflowPolicy +
+                ", backlog=" + backlog.size() +
+                ", dropped=" + dropped + "}";
+    }
+
+    /**
+     * Take a token for a chat message if one is free, and otherwise handle the message according to the overflow
+     * policy. Must be called holding the lock.
+     *
+     * @param message Chat message
+     * @param now Current time in nanoseconds, as in {@link System#nanoTime()}
+     * @return The messages to narrate, in order
+     */
+    private List<Chat> accept(final Chat message, final long now) {
+        if (rate <= 0) {
+            return List.of(message);
+        }
+        final List<Chat> messages = drain(now);
+        // messages already waiting go first, keeping the chat in order
+        if (backlog.isEmpty() && overflowed == 0 && tokens >= 1) {
+            tokens--;
+            messages.add(message);
+            return messages;
+        }
+        switch (overflowPolicy) {
+            case DROP_OLDEST -> {
+                if (backlog.size() >= burst) {
+                    backlog.removeFirst();
+                    dropped++;
+                }
+                backlog.addLast(message);
+            }
+            case DROP_NEWEST -> {
+                if (backlog.size() >= burst) {
+                    dropped++;
+                } else {
+                    backlog.addLast(message);
+                }
+            }
+            case SUMMARIZE -> {
+                overflowed++;
+                if (message.priority().compareTo(overflowedPriority) > 0) {
+                    overflowedPriority = message.priority();
+                }
+                dropped++;
+            }
+        }
+        scheduleFlush();
+        return messages;
+    }
+
+    /**
+     * Take backlogged messages, or the summary of overflowed messages, for as long as tokens are free. Must be called
+     * holding the lock.
+     *
+     * @param now Current time in nanoseconds, as in {@link System#nanoTime()}
+     * @return The messages to narrate, in order
+     */
+    private List<Chat> drain(final long now) {
+        refill(now);
+        final List<Chat> messages = new ArrayList<>();
+        while (tokens >= 1 && !backlog.isEmpty()) {
+            tokens--;
+            messages.add(backlog.removeFirst());
+        }
+        if (tokens >= 1 && overflowed > 0) {
+            tokens--;
+            messages.add(new Chat(overflowed == 1 ? "1 more chat message" : overflowed + " more chat messages",
+                    overflowedPriority));
+            overflowed = 0;
+            overflowedPriority = NarrationScheduler.Priority.LOW;
+        }
+        return messages;
+    }
+
+    /**
+     * Hand messages to the speaker, which must happen holding the lock, so that they are handed over in the order they
+     * were taken.
+     */
+    private void speak(final List<Chat> messages) {
+        for (final Chat message : messages) {
+            speaker.accept(message.message(), message.priority());
+        }
+    }
+
+    private void refill(final long now) {
+        if (rate > 0) {
+            tokens = Math.min(burst, tokens + Math.max(0, now - lastRefill) * rate / NANOS_PER_SECOND);
+        }
+        lastRefill = now;
+    }
+
+    /**
+     * Arrange for {@link #flush(long)} to run once the next token is free, unless that is already arranged.
+     */
+    private void scheduleFlush() {
+        if (!scheduling || flushScheduled) {
+            return;
+        }
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "Chat narration rate limiter");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        flushScheduled = true;
+        final long delay = (long) Math.ceil((1 - tokens) * NANOS_PER_SECOND / rate);
+        scheduler.schedule(this::scheduledFlush, Math.max(0, delay), TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void scheduledFlush() {
+        flushScheduled = false;
+        speak(drain(clock.getAsLong()));
+        if ((!backlog.isEmpty() || overflowed > 0) && rate > 0) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Chat message along with the priority it is narrated with.
+     */
+    private record Chat(String message, NarrationScheduler.Priority priority) {}
+}
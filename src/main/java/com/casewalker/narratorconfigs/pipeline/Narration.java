@@ -0,0 +1,69 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.pipeline;
+
+import com.casewalker.narratorconfigs.matcher.SegmentedText;
+
+/**
+ * A message on its way to the narrator, as captured by one of the narration injections. The message is kept in
+ * segments rather than flattened, so that visiting it (such as with {@link net.minecraft.text.Text#visit}) happens
+ * wherever the narration is processed rather than where it is captured, and only as far as needed.
+ *
+ * @param message Text to possibly narrate
+ * @param interrupt Whether the narration should interrupt whatever is being narrated
+ * @param source Where the message came from, which decides how it is classified
+ * @param translationKey Translation key of the message if the message is a translation, otherwise null
+ * @author Case Walker
+ */
+public record Narration(SegmentedText message, boolean interrupt, Source source, String translationKey) {
+
+    /**
+     * Create a narration of a message which is not known to be a translation.
+     *
+     * @param message Text to possibly narrate
+     * @param interrupt Whether the narration should interrupt whatever is being narrated
+     * @param source Where the message came from, which decides how it is classified
+     */
+    public Narration(final SegmentedText message, final boolean interrupt, final Source source) {
+        this(message, interrupt, source, null);
+    }
+
+    /**
+     * Where a message came from.
+     */
+    public enum Source {
+        /**
+         * Chat messages from players, see {@link net.minecraft.client.util.NarratorManager#narrateChatMessage}.
+         */
+        CHAT,
+        /**
+         * Screen and other system narrations, see {@link net.minecraft.client.util.NarratorManager#narrate(String)}.
+         */
+        SYSTEM,
+        /**
+         * Game messages, see {@link net.minecraft.client.network.message.MessageHandler#onGameMessage}.
+         */
+        GAME
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.pipeline;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filter suppressing narrations which were already seen within a short window, since screens send the same narration
+ * over and over and every one of them would restart the same utterance. A narration which keeps arriving faster than
+ * the window is only narrated once, until it stops for a whole window.
+ * <p>
+ * The most recent narrations are kept in a small ring of preallocated slots, holding each narration's text and the
+ * time it was last seen. Checking a narration compares cached string hashes before comparing the strings, and
+ * allocates nothing.
+ *
+ * @author Case Walker
+ */
+public class NarrationDeduplicator {
+
+    /**
+     * Default window, in milliseconds, within which an identical narration is suppressed.
+     */
+    public static final int DEFAULT_WINDOW_MILLIS = 1000;
+
+    /**
+     * Number of distinct recent narrations remembered.
+     */
+    private static final int RING_SIZE = 16;
+
+    private final String[] texts = new String[RING_SIZE];
+    private final int[] hashes = new int[RING_SIZE];
+    private final long[] times = new long[RING_SIZE];
+    private int next;
+    private long windowNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_WINDOW_MILLIS);
+    private long suppressed;
+
+    /**
+     * Change the window within which an identical narration is suppressed.
+     *
+     * @param windowMillis Window in milliseconds, where 0 suppresses nothing
+     */
+    public synchronized void setWindowMillis(final int windowMillis) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMillis));
+    }
+
+    /**
+     * Check whether a narration was already seen within the window, and remember it as seen now either way.
+     *
+     * @param text Accepted narration
+     * @return Whether the narration should be suppressed
+     */
+    public boolean isRepeat(final String text) {
+        return isRepeat(text, System.nanoTime());
+    }
+
+    /**
+     * See {@link #isRepeat(String)}.
+     *
+     * @param text Accepted narration
+     * @param now Current time in nanoseconds, as in {@link System#nanoTime()}
+     * @return Whether the narration should be suppressed
+     */
+    synchronized boolean isRepeat(final String text, final long now) {
+        if (windowNanos == 0) {
+            return false;
+        }
+        final int hash = text.hashCode();
+        for (int i = 0; i < RING_SIZE; i++) {
+            if (hashes[i] == hash && text.equals(texts[i])) {
+                // seen again, so the window starts over whether or not the narration is suppressed
+                final boolean repeat = now - times[i] < windowNanos;
+                times[i] = now;
+                if (repeat) {
+                    suppressed++;
+                }
+                return repeat;
+            }
+        }
+        texts[next] = text;
+        hashes[next] = hash;
+        times[next] = now;
+        next = (next + 1) % RING_SIZE;
+        return false;
+    }
+
+    /**
+     * @return The number of narrations suppressed so far
+     */
+    public synchronized long getSuppressed() {
+        return suppressed;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.pipeline;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of what the narration filter does and what it costs: how many messages arrive through each entry point,
+ * how many of them are accepted or rejected, how long classifying them takes, and how long the last reload took, along
+ * with gauges (such as the number of patterns or narrations waiting in the queue) registered by whoever owns them.
+ * <p>
+ * Recording is lock-free, so it may happen on any thread. Classification times are kept in a histogram of
+ * power-of-two buckets, so percentiles are reported as the upper bound of the bucket they fall in.
+ *
+ * @author Case Walker
+ */
+public class NarrationMetrics {
+
+    private static final int BUCKETS = Long.SIZE;
+
+    private final LongAdder[] seen = adders();
+    private final LongAdder[] accepted = adders();
+    private final LongAdder[] rejected = adders();
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator maxLatency = new LongAccumulator(Math::max, 0);
+    private final LongAdder reloads = new LongAdder();
+    private volatile long lastReloadNanos;
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> logging;
+
+    /**
+     * Count a message arriving through one of the entry points.
+     *
+     * @param source Entry point the message arrived through
+     */
+    public void recordSeen(final Narration.Source source) {
+        seen[source.ordinal()].increment();
+    }
+
+    /**
+     * Count a classified message and the time it took to classify it.
+     *
+     * @param source Entry point the message arrived through
+     * @param isAccepted Whether the message was accepted
+     * @param nanos Time taken to classify the message, in nanoseconds
+     */
+    public void recordVerdict(final Narration.Source source, final boolean isAccepted, final long nanos) {
+        (isAccepted ? accepted : rejected)[source.ordinal()].increment();
+        final long latency = Math.max(0, nanos);
+        latencyBuckets.incrementAndGet(bucket(latency));
+        maxLatency.accumulate(latency);
+    }
+
+    /**
+     * Record how long rebuilding the accepted narrations took.
+     *
+     * @param nanos Time taken to reload, in nanoseconds
+     */
+    public void recordReload(final long nanos) {
+        reloads.increment();
+        lastReloadNanos = nanos;
+    }
+
+    /**
+     * Register (or replace) a gauge, read whenever the metrics are reported.
+     *
+     * @param name Name to report the gauge under
+     * @param gauge Supplier of the current value
+     */
+    public synchronized void registerGauge(final String name, final LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Log the metrics periodically, replacing any previous periodic logging.
+     *
+     * @param intervalSeconds Seconds between log lines, where 0 (or less) stops logging
+     * @param log Consumer of the log line
+     */
+    public synchronized void setLogInterval(final int intervalSeconds, final Consumer<String> log) {
+        if (logging != null) {
+            logging.cancel(false);
+            logging = null;
+        }
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "Narration metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        logging = scheduler.scheduleAtFixedRate(
+                () -> log.accept(toString()), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Clear every count and the latency histogram. Gauges are left alone.
+     */
+    public void reset() {
+        for (int i = 0; i < seen.length; i++) {
+            seen[i].reset();
+            accepted[i].reset();
+            rejected[i].reset();
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            latencyBuckets.set(i, 0);
+        }
+        maxLatency.reset();
+        reloads.reset();
+        lastReloadNanos = 0;
+    }
+
+    /**
+     * @param source Entry point
+     * @return The number of messages which arrived through the entry point
+     */
+    public long getSeen(final Narration.Source source) {
+        return seen[source.ordinal()].sum();
+    }
+
+    /**
+     * @param source Entry point
+     * @return The number of messages from the entry point which were accepted
+     */
+    public long getAccepted(final Narration.Source source) {
+        return accepted[source.ordinal()].sum();
+    }
+
+    /**
+     * @param source Entry point
+     * @return The number of messages from the entry point which were rejected
+     */
+    public long getRejected(final Narration.Source source) {
+        return rejected[source.ordinal()].sum();
+    }
+
+    /**
+     * Estimate a percentile of the classification times.
+     *
+     * @param percentile Percentile between 0 and 1, such as 0.99
+     * @return The upper bound of the histogram bucket the percentile falls in, in nanoseconds, or 0 if nothing was
+     * classified yet
+     */
+    public long getLatencyPercentileNanos(final double percentile) {
+        final long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = latencyBuckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                // the percentile can never be more than the slowest classification itself
+                return Math.min(upperBound(i), maxLatency.get());
+            }
+        }
+        return maxLatency.get();
+    }
+
+    /**
+     * Report the metrics, one line per kind of metric, such as for a chat command.
+     *
+     * @return The lines of the report
+     */
+    public List<String> report() {
+        final List<String> lines = new ArrayList<>();
+        final StringBuilder counts = new StringBuilder("messages (seen/accepted/rejected):");
+        for (final Narration.Source source : Narration.Source.values()) {
+            counts.append(' ').append(source.name().toLowerCase(Locale.ROOT))
+                    .append('=').append(getSeen(source))
+                    .append('/').append(getAccepted(source))
+                    .append('/').append(getRejected(source));
+        }
+        lines.add(counts.toString());
+        lines.add("classification: p50<=" + micros(getLatencyPercentileNanos(0.5)) +
+                " p99<=" + micros(getLatencyPercentileNanos(0.99)) +
+                " max=" + micros(maxLatency.get()));
+        lines.add("reloads: " + reloads.sum() + ", last took " + micros(lastReloadNanos));
+        final StringBuilder gaugeLine = new StringBuilder("gauges:");
+        synchronized (this) {
+            gauges.forEach((name, gauge) -> gaugeLine.append(' ').append(name).append('=').append(gauge.getAsLong()));
+        }
+        lines.add(gaugeLine.toString());
+        return lines;
+    }
+
+    @Override
+    public String toString() {
+        return "NarrationMetrics{" + String.join("; ", report()) + "}";
+    }
+
+    private static LongAdder[] adders() {
+        final LongAdder[] adders = new LongAdder[Narration.Source.values().length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * @return The histogram bucket for a time, bucket i holding times below 2^i (and at least 2^(i - 1))
+     */
+    private static int bucket(final long nanos) {
+        return Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(nanos));
+    }
+
+    private static long upperBound(final int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    private static String micros(final long nanos) {
+        return String.format(Locale.ROOT, "%.1fus", nanos / 1000.0);
+    }
+}
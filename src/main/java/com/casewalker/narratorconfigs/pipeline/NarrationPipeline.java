@@ -0,0 +1,242 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.pipeline;
+
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Pipeline stage between the narration injections and the narrator. Narrations are put on a bounded, lock-free queue
+ * and handled in order by a dedicated worker thread, so that classifying them (flattening the text, matching it against
+ * the accepted narrations) and narrating them never costs the client thread any time.
+ * <p>
+ * When the queue is full, either the new narration or the oldest queued one is dropped, depending on the
+ * {@link DropPolicy}. A capacity of 0 turns the queue off, in which case narrations are handled right away on the
+ * thread submitting them.
+ *
+ * @author Case Walker
+ */
+public class NarrationPipeline {
+
+    /**
+     * What to drop when a narration arrives while the queue is full.
+     */
+    public enum DropPolicy {
+        /**
+         * Drop the narration which just arrived, keeping those already queued.
+         */
+        DROP_NEWEST,
+        /**
+         * Drop the oldest queued narration, since newer narrations are usually more relevant.
+         */
+        DROP_OLDEST;
+
+        /**
+         * Parse a drop policy case-insensitively.
+         *
+         * @param name Name of the drop policy, such as "drop_oldest"
+         * @param defaultPolicy Policy to return if the name is null or unknown
+         * @return The drop policy
+         */
+        public static DropPolicy parse(final String name, final DropPolicy defaultPolicy) {
+            if (name == null) {
+                return defaultPolicy;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (final IllegalArgumentException e) {
+                return defaultPolicy;
+            }
+        }
+    }
+
+    /**
+     * Default number of narrations which may wait in the queue.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final Consumer<Narration> handler;
+    private final Queue<Narration> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of narrations in the queue, which the queue itself cannot tell in constant time.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong handled = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Thread worker;
+
+    private volatile int capacity = DEFAULT_CAPACITY;
+    private volatile DropPolicy dropPolicy = DropPolicy.DROP_OLDEST;
+    private volatile BiConsumer<String, Throwable> failureLog = (message, e) -> {};
+
+    /**
+     * Create the pipeline and start its worker thread, which runs as a daemon so it never keeps the game open.
+     *
+     * @param name Name of the worker thread
+     * @param handler Handler classifying and narrating each narration, in the order they were submitted
+     */
+    public NarrationPipeline(final String name, final Consumer<Narration> handler) {
+        this.handler = handler;
+        this.worker = new Thread(this::work, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Change how many narrations may wait in the queue, and what to drop once it is full.
+     *
+     * @param capacity Number of narrations which may wait in the queue, where 0 handles narrations right away
+     * @param dropPolicy What to drop when the queue is full
+     */
+    public void configure(final int capacity, final DropPolicy dropPolicy) {
+        this.capacity = Math.max(0, capacity);
+        this.dropPolicy = dropPolicy;
+    }
+
+    /**
+     * Report narrations whose handler throws to the given log. The first failure is reported and then ever fewer, so
+     * a handler failing on every narration does not flood the log.
+     *
+     * @param failureLog Consumer of a message and the exception for each reported failure
+     */
+    public void setFailureLog(final BiConsumer<String, Throwable> failureLog) {
+        this.failureLog = failureLog;
+    }
+
+    /**
+     * @return Whether narrations are queued for the worker thread, rather than handled right away
+     */
+    public boolean isQueued() {
+        return capacity > 0;
+    }
+
+    /**
+     * Submit a narration, which is queued for the worker thread or, if the queue is off, handled right away.
+     *
+     * @param narration Narration to handle
+     * @return Whether the narration was accepted into the pipeline, which is false if it was dropped
+     */
+    public boolean submit(final Narration narration) {
+        final int currentCapacity = capacity;
+        if (currentCapacity == 0) {
+            handle(narration);
+            return true;
+        }
+        if (size.incrementAndGet() > currentCapacity) {
+            if (dropPolicy == DropPolicy.DROP_NEWEST) {
+                size.decrementAndGet();
+                dropped.incrementAndGet();
+                return false;
+            }
+            // the worker may have taken the oldest narration in the meantime, in which case there is room anyway
+            if (queue.poll() != null) {
+                size.decrementAndGet();
+                dropped.incrementAndGet();
+            }
+        }
+        queue.add(narration);
+        LockSupport.unpark(worker);
+        return true;
+    }
+
+    /**
+     * @return The number of narrations waiting in the queue
+     */
+    public int getQueued() {
+        return Math.max(0, size.get());
+    }
+
+    /**
+     * @return The number of narrations handled so far
+     */
+    public long getHandled() {
+        return handled.get();
+    }
+
+    /**
+     * @return The number of narrations dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return The number of narrations whose handler threw an exception
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "NarrationPipeline{capacity=" + capacity +
+                ", dropPolicy=" + dropPolicy +
+                ", queued=" + getQueued() +
+                ", handled=" + getHandled() +
+                ", dropped=" + getDropped() +
+                ", failed=" + getFailed() + "}";
+    }
+
+    /**
+     * Handle queued narrations in order, parking whenever the queue is empty.
+     */
+    private void work() {
+        while (true) {
+            final Narration narration = queue.poll();
+            if (narration == null) {
+                // a submission in between the poll and the park leaves a permit, so the park returns right away
+                LockSupport.park(this);
+                continue;
+            }
+            size.decrementAndGet();
+            handle(narration);
+        }
+    }
+
+    private void handle(final Narration narration) {
+        try {
+            handler.accept(narration);
+            handled.incrementAndGet();
+        } catch (final Throwable e) {
+            // one bad narration must not stop the worker, even if matching it overflowed the stack, but a virtual
+            // machine which broke down otherwise (such as being out of memory) is not recovered from here
+            if (e instanceof VirtualMachineError && !(e instanceof StackOverflowError)) {
+                throw e;
+            }
+            final long count = failed.incrementAndGet();
+            if (Long.bitCount(count) == 1) {
+                failureLog.accept("Could not process a " + narration.source() + " narration (" + count +
+                        " failure(s) so far)", e);
+            }
+        }
+    }
+}
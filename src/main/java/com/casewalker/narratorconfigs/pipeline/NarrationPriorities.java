@@ -0,0 +1,119 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.pipeline;
+
+import com.casewalker.narratorconfigs.matcher.KeyPrefixFilter;
+import com.casewalker.narratorconfigs.matcher.NarrationMatcher;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Classifier giving each narration its {@link NarrationScheduler.Priority}, from the configured high and low priority
+ * key prefixes and regular expressions. A narration which is a translation is looked up by its key, and any other
+ * narration is matched against the translations under the prefixes, the same way accepted narrations are. A narration
+ * matching both is high priority, and one matching neither is normal priority.
+ *
+ * @author Case Walker
+ */
+public final class NarrationPriorities {
+
+    /**
+     * Classifier giving every narration normal priority.
+     */
+    public static final NarrationPriorities NONE =
+            new NarrationPriorities(NarrationMatcher.EMPTY, NarrationMatcher.EMPTY);
+
+    private final NarrationMatcher high;
+    private final NarrationMatcher low;
+
+    private NarrationPriorities(final NarrationMatcher high, final NarrationMatcher low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Build the classifier for the given translations.
+     *
+     * @param translations Map of keys and values such as in en_us.json
+     * @param highPrefixes Key prefixes of high priority translations
+     * @param highRegularExpressions Regular expressions of high priority narrations
+     * @param lowPrefixes Key prefixes of low priority translations
+     * @param lowRegularExpressions Regular expressions of low priority narrations
+     * @return The classifier, which is {@link #NONE} if nothing is configured
+     */
+    public static NarrationPriorities build(
+            final Map<String, String> translations,
+            final List<String> highPrefixes,
+            final List<String> highRegularExpressions,
+            final List<String> lowPrefixes,
+            final List<String> lowRegularExpressions) {
+        if (highPrefixes.isEmpty() && highRegularExpressions.isEmpty() &&
+                lowPrefixes.isEmpty() && lowRegularExpressions.isEmpty()) {
+            return NONE;
+        }
+        return new NarrationPriorities(
+                new NarrationMatcher(select(translations, highPrefixes), highRegularExpressions),
+                new NarrationMatcher(select(translations, lowPrefixes), lowRegularExpressions));
+    }
+
+    /**
+     * @param narration Accepted narration
+     * @return The priority of the narration
+     */
+    public NarrationScheduler.Priority of(final Narration narration) {
+        if (this == NONE) {
+            return NarrationScheduler.Priority.NORMAL;
+        }
+        if (matches(high, narration)) {
+            return NarrationScheduler.Priority.HIGH;
+        }
+        return matches(low, narration) ? NarrationScheduler.Priority.LOW : NarrationScheduler.Priority.NORMAL;
+    }
+
+    private static boolean matches(final NarrationMatcher matcher, final Narration narration) {
+        if (matcher.size() == 0) {
+            return false;
+        }
+        if (narration.translationKey() != null) {
+            return matcher.matchesTranslation(narration.translationKey(), narration.message());
+        }
+        return matcher.matches(narration.message());
+    }
+
+    /**
+     * @return The translations under any of the prefixes
+     */
+    private static Map<String, String> select(final Map<String, String> translations, final List<String> prefixes) {
+        if (prefixes.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        final KeyPrefixFilter filter = new KeyPrefixFilter(prefixes, Collections.emptyList());
+        return translations.entrySet().stream()
+                .filter(entry -> filter.accepts(entry.getKey()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+}
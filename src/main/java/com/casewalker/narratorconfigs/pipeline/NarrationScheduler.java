@@ -0,0 +1,347 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.pipeline;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler in front of the narrator, giving every narration one of three priority lanes so that important messages
+ * (such as deaths or whispers) are never stuck behind a long run of chat.
+ * <p>
+ * The narrator cannot tell when it is done speaking, so the scheduler estimates how long each narration takes from its
+ * length and the configured speech rate, and hands the narrator one narration at a time. Narrations arriving while the
+ * narrator is busy wait in the lane of their priority, and the waiting narration of the highest priority goes next, so
+ * a narration never waits on more than the current one and those of its own priority or higher. A narration may also
+ * interrupt speech of a lower priority right away, in which case the interrupted narration is not resumed. Each lane
+ * is bounded, dropping its oldest narration once full.
+ * <p>
+ * As with the {@link ChatRateLimiter}, the speaker is called while holding the lock of the scheduler, so narrations
+ * reach it in the order they were given their turn. The speaker must therefore only hand narrations on, never wait
+ * for the narrator to speak them.
+ *
+ * @author Case Walker
+ */
+public class NarrationScheduler {
+
+    /**
+     * Lane of a narration, deciding which waiting narration goes next.
+     */
+    public enum Priority {
+        /**
+         * Narrated only when nothing else is waiting.
+         */
+        LOW,
+        /**
+         * Narrated in arrival order, which is every narration unless configured otherwise.
+         */
+        NORMAL,
+        /**
+         * Narrated before anything else, possibly interrupting speech of a lower priority.
+         */
+        HIGH;
+
+        /**
+         * Parse a priority case-insensitively.
+         *
+         * @param name Name of the priority, such as "high"
+         * @param defaultPriority Priority to return if the name is null or unknown
+         * @return The priority
+         */
+        public static Priority parse(final String name, final Priority defaultPriority) {
+            if (name == null) {
+                return defaultPriority;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (final IllegalArgumentException e) {
+                return defaultPriority;
+            }
+        }
+    }
+
+    /**
+     * Narrator receiving the narrations once it is their turn, called while holding the lock of the scheduler.
+     */
+    @FunctionalInterface
+    public interface Speaker {
+        /**
+         * @param message Message to narrate
+         * @param interrupt Whether to interrupt (and clear) whatever is being narrated
+         */
+        void say(String message, boolean interrupt);
+    }
+
+    /**
+     * Default number of characters the narrator is assumed to speak per second once narrations are given priorities.
+     * Until configured otherwise, the scheduler hands every narration to the narrator right away.
+     */
+    public static final double DEFAULT_SPEECH_RATE = 15;
+
+    /**
+     * Default number of narrations which may wait in each lane.
+     */
+    public static final int DEFAULT_LANE_CAPACITY = 16;
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final Speaker speaker;
+    private final boolean scheduling;
+    private final List<Deque<Waiting>> lanes;
+    private final long[] maxWait = new long[PRIORITIES.length];
+    private ScheduledExecutorService scheduler;
+    private boolean flushScheduled;
+    private long flushAt;
+
+    private double speechRate;
+    private int laneCapacity = DEFAULT_LANE_CAPACITY;
+    private boolean interruptLowerPriority = true;
+    private long speakingUntil;
+    /**
+     * Priority of the narration spoken last, or null if nothing was spoken yet.
+     */
+    private Priority speaking;
+    private long dropped;
+    private long interrupted;
+
+    /**
+     * Create a scheduler handing waiting narrations to the narrator by itself once the narrator is free.
+     *
+     * @param speaker Narrator receiving the narrations
+     */
+    public NarrationScheduler(final Speaker speaker) {
+        this(speaker, true);
+    }
+
+    /**
+     * @param speaker Narrator receiving the narrations
+     * @param scheduling Whether to hand waiting narrations to the narrator by itself, rather than only when
+     *                   {@link #flush(long)} is called
+     */
+    NarrationScheduler(final Speaker speaker, final boolean scheduling) {
+        this.speaker = speaker;
+        this.scheduling = scheduling;
+        final List<Deque<Waiting>> lanes = new ArrayList<>(PRIORITIES.length);
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            lanes.add(new ArrayDeque<>());
+        }
+        this.lanes = List.copyOf(lanes);
+    }
+
+    /**
+     * Change the speech rate, the lane size and whether lower priority speech is interrupted. The lanes are trimmed
+     * to the new lane size.
+     *
+     * @param speechRate Number of characters the narrator speaks per second, where 0 (or less) hands every narration
+     *                   to the narrator right away, in arrival order
+     * @param laneCapacity Number of narrations which may wait in each lane
+     * @param interruptLowerPriority Whether a narration interrupts speech of a lower priority
+     */
+    public synchronized void configure(
+            final double speechRate,
+            final int laneCapacity,
+            final boolean interruptLowerPriority) {
+        this.speechRate = speechRate;
+        this.laneCapacity = Math.max(1, laneCapacity);
+        this.interruptLowerPriority = interruptLowerPriority;
+        if (speechRate <= 0) {
+            // without lanes, whatever is waiting can be narrated right away
+            for (int i = lanes.size() - 1; i >= 0; i--) {
+                while (!lanes.get(i).isEmpty()) {
+                    speaker.say(lanes.get(i).removeFirst().message(), false);
+                }
+            }
+        }
+        for (final Deque<Waiting> lane : lanes) {
+            while (lane.size() > this.laneCapacity) {
+                lane.removeFirst();
+                dropped++;
+            }
+        }
+    }
+
+    /**
+     * Narrate a message now if the narrator is free or the message may interrupt it, and otherwise let the message
+     * wait in the lane of its priority.
+     *
+     * @param message Message to narrate
+     * @param priority Priority of the message
+     * @param interrupt Whether the message should interrupt speech of the same or a lower priority
+     */
+    public void submit(final String message, final Priority priority, final boolean interrupt) {
+        submit(message, priority, interrupt, System.nanoTime());
+    }
+
+    /**
+     * See {@link #submit(String, Priority, boolean)}.
+     *
+     * @param message Message to narrate
+     * @param priority Priority of the message
+     * @param interrupt Whether the message should interrupt speech of the same or a lower priority
+     * @param now Current time in nanoseconds, as in {@link System#nanoTime()}
+     */
+    synchronized void submit(final String message, final Priority priority, final boolean interrupt, final long now) {
+        if (speechRate <= 0) {
+            speaker.say(message, interrupt);
+            return;
+        }
+        flush(now);
+        // once flushed, a free narrator means nothing is waiting
+        if (!isBusy(now)) {
+            speak(message, priority, interrupt, now, now);
+            return;
+        }
+        final int comparison = priority.compareTo(speaking);
+        if (interrupt && comparison >= 0 || interruptLowerPriority && comparison > 0) {
+            interrupted++;
+            speak(message, priority, true, now, now);
+        } else {
+            final Deque<Waiting> lane = lanes.get(priority.ordinal());
+            if (lane.size() >= laneCapacity) {
+                lane.removeFirst();
+                dropped++;
+            }
+            lane.addLast(new Waiting(message, now));
+        }
+        scheduleFlush(now);
+    }
+
+    /**
+     * Hand the waiting narration of the highest priority to the narrator for as long as the narrator is free.
+     *
+     * @param now Current time in nanoseconds, as in {@link System#nanoTime()}
+     */
+    synchronized void flush(final long now) {
+        while (!isBusy(now)) {
+            int next = lanes.size() - 1;
+            while (next >= 0 && lanes.get(next).isEmpty()) {
+                next--;
+            }
+            if (next < 0) {
+                return;
+            }
+            final Waiting waiting = lanes.get(next).removeFirst();
+            speak(waiting.message(), PRIORITIES[next], false, now, waiting.since());
+        }
+    }
+
+    /**
+     * @return The number of narrations waiting in any lane
+     */
+    public synchronized int getWaiting() {
+        int waiting = 0;
+        for (final Deque<Waiting> lane : lanes) {
+            waiting += lane.size();
+        }
+        return waiting;
+    }
+
+    /**
+     * @return The number of narrations dropped because their lane was full
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return The number of narrations which interrupted speech
+     */
+    public synchronized long getInterrupted() {
+        return interrupted;
+    }
+
+    /**
+     * @param priority Priority of the narrations
+     * @return The longest time in nanoseconds a narration of the priority waited before being narrated
+     */
+    public synchronized long getMaxWait(final Priority priority) {
+        return maxWait[priority.ordinal()];
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "NarrationScheduler{speechRate=" + speechRate +
+                ", laneCapacity=" + laneCapacity +
+                ", interruptLowerPriority=" + interruptLowerPriority +
+                ", waiting=" + getWaiting() +
+                ", dropped=" + dropped +
+                ", interrupted=" + interrupted + "}";
+    }
+
+    private boolean isBusy(final long now) {
+        return speaking != null && now - speakingUntil < 0;
+    }
+
+    private void speak(
+            final String message,
+            final Priority priority,
+            final boolean interrupt,
+            final long now,
+            final long since) {
+        speaker.say(message, interrupt);
+        speakingUntil = now + (long) (message.length() * NANOS_PER_SECOND / speechRate);
+        speaking = priority;
+        maxWait[priority.ordinal()] = Math.max(maxWait[priority.ordinal()], now - since);
+    }
+
+    /**
+     * Arrange for {@link #flush(long)} to run once the narrator is free, unless that is already arranged for then or
+     * earlier, or nothing is waiting.
+     */
+    private void scheduleFlush(final long now) {
+        if (!scheduling || getWaiting() == 0 || flushScheduled && flushAt - speakingUntil <= 0) {
+            return;
+        }
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "Narration scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        // an interruption may free the narrator earlier than a flush already arranged, which then runs for nothing
+        flushScheduled = true;
+        flushAt = speakingUntil;
+        scheduler.schedule(this::scheduledFlush, Math.max(0, speakingUntil - now), TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void scheduledFlush() {
+        flushScheduled = false;
+        final long now = System.nanoTime();
+        flush(now);
+        scheduleFlush(now);
+    }
+
+    /**
+     * Narration waiting in a lane, along with the time it arrived.
+     */
+    private record Waiting(String message, long since) {}
+}
@@ -0,0 +1,248 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.replay;
+
+import com.casewalker.modutils.config.ConfigHandler;
+import com.casewalker.narratorconfigs.config.NarratorConfigsModConfig;
+import com.casewalker.narratorconfigs.matcher.NarrationMatcher;
+import com.casewalker.narratorconfigs.matcher.NarrationMatcherBuilder;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Command-line tool replaying a client log (such as latest.log) through the narration filter, without launching
+ * Minecraft, to tune configurations and catch throughput regressions offline. Run it with:
+ * <pre>
+ * ./gradlew replayChatLog -PreplayArgs="config/narratorconfigsmod.yml en_us.json logs/latest.log"
+ * </pre>
+ * Each chat line of the log is classified the way the mod classifies game messages in the "Custom Configs" narrator
+ * mode: player chat ("&lt;name&gt; message") is narrated if chat is enabled, and anything else is narrated if the
+ * configured translations or regular expressions accept it. Since the log only keeps rendered text, messages are
+ * matched as text, never by their translation key. The chat rate limit is not applied.
+ * <p>
+ * The report lists the lines which would have been narrated, how often each translation key and regular expression
+ * matched, and how many messages per second the filter got through.
+ *
+ * @author Case Walker
+ */
+public class ChatLogReplay {
+
+    /**
+     * Chat lines in a client log, such as "[12:34:56] [Render thread/INFO]: [CHAT] Steve joined the game".
+     */
+    private static final Pattern CHAT_LINE = Pattern.compile("\\[CHAT] (.*)$");
+
+    /**
+     * Chat messages sent by players rather than by the game.
+     */
+    private static final Pattern PLAYER_CHAT = Pattern.compile("^<[^>]+> ");
+
+    /**
+     * Formatting codes, which are logged along with the text but never narrated.
+     */
+    private static final Pattern FORMATTING_CODE = Pattern.compile("§.");
+
+    /**
+     * Key the hits of player chat are counted under.
+     */
+    private static final String CHAT = "(chat)";
+
+    private final NarrationMatcher matcher;
+    private final boolean chatEnabled;
+    private final Map<String, Long> hits = new HashMap<>();
+    private final List<String> narrated = new ArrayList<>();
+    private long lines;
+    private long messages;
+    private long accepted;
+    private long matchNanos;
+
+    /**
+     * @param matcher Matcher built from the configuration, as the mod would build it
+     * @param chatEnabled Whether player chat is narrated
+     */
+    public ChatLogReplay(final NarrationMatcher matcher, final boolean chatEnabled) {
+        this.matcher = matcher;
+        this.chatEnabled = chatEnabled;
+    }
+
+    /**
+     * Replay every chat line from the reader through the filter.
+     *
+     * @param reader Reader of the log
+     * @param raw Whether every line is a message by itself, rather than only the chat lines of a client log
+     * @throws IOException If the log cannot be read
+     */
+    public void replay(final BufferedReader reader, final boolean raw) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines++;
+            final String message = extractMessage(line, raw);
+            if (message != null) {
+                replay(message);
+            }
+        }
+    }
+
+    /**
+     * Classify one message, counting which pattern accepted it.
+     *
+     * @param message Message as it would be sent to the narrator
+     */
+    void replay(final String message) {
+        messages++;
+        final String pattern;
+        if (PLAYER_CHAT.matcher(message).find()) {
+            pattern = chatEnabled ? CHAT : null;
+        } else {
+            final long start = System.nanoTime();
+            final boolean isAccepted = matcher.matches(message);
+            matchNanos += System.nanoTime() - start;
+            // only the verdict is timed, finding out which pattern accepted the message is not part of the filter
+            pattern = isAccepted ? matcher.findMatchingPattern(message) : null;
+        }
+        if (pattern != null) {
+            accepted++;
+            hits.merge(pattern, 1L, Long::sum);
+            narrated.add(message);
+        }
+    }
+
+    /**
+     * Get the message a log line would have sent to the narrator.
+     *
+     * @param line Line of the log
+     * @param raw Whether the line is a message by itself
+     * @return The message without formatting codes, or null if the line is not a chat line
+     */
+    static String extractMessage(final String line, final boolean raw) {
+        String message = line;
+        if (!raw) {
+            final Matcher chatLine = CHAT_LINE.matcher(line);
+            if (!chatLine.find()) {
+                return null;
+            }
+            message = chatLine.group(1);
+        }
+        return FORMATTING_CODE.matcher(message).replaceAll("");
+    }
+
+    /**
+     * @return The messages which would have been narrated, in order
+     */
+    public List<String> getNarrated() {
+        return narrated;
+    }
+
+    /**
+     * @return How often each translation key and regular expression accepted a message, player chat being counted
+     * under "(chat)"
+     */
+    public Map<String, Long> getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of messages replayed
+     */
+    public long getMessages() {
+        return messages;
+    }
+
+    /**
+     * Print the narrated messages, the hit counts and the throughput.
+     *
+     * @param out Stream to print to
+     */
+    public void report(final PrintStream out) {
+        narrated.forEach(message -> out.println("narrated: " + message));
+        out.println();
+        out.println("hits per pattern:");
+        hits.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .forEach(entry -> out.println(
+                        String.format(Locale.ROOT, "%10d  %s", entry.getValue(), entry.getKey())));
+        out.println();
+        final double seconds = matchNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        out.println(String.format(Locale.ROOT, "%d lines, %d messages, %d narrated, %d rejected", lines, messages,
+                accepted, messages - accepted));
+        out.println(String.format(Locale.ROOT, "matching took %.3f ms, %.0f messages per second", seconds * 1000,
+                seconds > 0 ? messages / seconds : 0));
+    }
+
+    /**
+     * Replay a log through the filter built from a configuration file and a language file.
+     *
+     * @param args The configuration file (JSON or YAML), the language file (such as en_us.json), the log file, and
+     *             optionally "--raw" if every line of the log is a message by itself
+     * @throws IOException If a file cannot be read
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: ChatLogReplay <config file> <language file> <log file> [--raw]");
+            System.exit(2);
+            return;
+        }
+        final ConfigHandler<NarratorConfigsModConfig> config = new ConfigHandler<>(NarratorConfigsModConfig.class);
+        config.initialize(List.of(Path.of(args[0])));
+        final Map<String, String> translations;
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(args[1]), StandardCharsets.UTF_8)) {
+            translations = new Gson().fromJson(reader, new TypeToken<Map<String, String>>() {}.getType());
+        }
+
+        final long start = System.nanoTime();
+        final NarratorConfigsModConfig currentConfig = config.get();
+        final NarrationMatcher matcher = new NarrationMatcherBuilder().build(
+                translations,
+                currentConfig.getEnabledPrefixes(),
+                currentConfig.getDisabledPrefixes(),
+                currentConfig.getEnabledRegularExpressions(),
+                currentConfig.getNarrationCacheSize(),
+                currentConfig.isLazyRegularExpressions());
+        System.out.println(String.format(Locale.ROOT, "built %d patterns in %.3f ms", matcher.size(),
+                (System.nanoTime() - start) / 1e6));
+
+        final ChatLogReplay replay = new ChatLogReplay(matcher, currentConfig.isChatEnabled());
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(args[2]), StandardCharsets.UTF_8)) {
+            replay.replay(reader, args.length > 3 && "--raw".equals(args[3]));
+        }
+        replay.report(System.out);
+    }
+}
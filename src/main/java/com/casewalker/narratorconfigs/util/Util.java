@@ -23,8 +23,25 @@
  */
 package com.casewalker.narratorconfigs.util;
 
+import com.casewalker.narratorconfigs.matcher.SegmentedText;
 import com.casewalker.narratorconfigs.mixin.NarratorModeMixinNCM2;
 import net.minecraft.client.option.NarratorMode;
+import net.minecraft.client.resource.language.LanguageManager;
+import net.minecraft.resource.Resource;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.text.StringVisitable;
+import net.minecraft.text.Text;
+import net.minecraft.text.TranslatableTextContent;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.Language;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Utilities and constants for this mod.
@@ -52,4 +69,57 @@ public class Util {
     public static NarratorMode customNarration() {
         return NarratorMode.byId(CUSTOM_NARRATION_ID);
     }
+
+    /**
+     * View a {@link Text} as the segments {@link Text#visit(StringVisitable.Visitor)} visits, so it can be matched
+     * without being flattened into a string.
+     *
+     * @param text Text to view
+     * @return The text as segments
+     */
+    public static SegmentedText segmentsOf(final Text text) {
+        return consumer -> text.visit(
+                segment -> consumer.test(segment) ? Optional.empty() : StringVisitable.TERMINATE_VISIT);
+    }
+
+    /**
+     * Get the translation key of a {@link Text} which is nothing but a translation, such as most game messages. A text
+     * with siblings narrates more than its translation, so it has to be matched as a whole instead.
+     *
+     * @param text Text to inspect
+     * @return The translation key, or null if the text's content is not a translation or the text has siblings
+     */
+    public static String translationKeyOf(final Text text) {
+        return text.getContent() instanceof TranslatableTextContent translatable && text.getSiblings().isEmpty() ?
+                translatable.getKey() : null;
+    }
+
+    /**
+     * Load the translations of a language the way {@link
+     * net.minecraft.client.resource.language.TranslationStorage#load(ResourceManager, List)} does once the language is
+     * selected, without selecting it: the default language first, then the language itself on top of it, from every
+     * namespace of every resource pack.
+     *
+     * @param resourceManager Resource manager holding the language files
+     * @param language Code of the language, such as "fr_fr"
+     * @return Map of keys and values such as in fr_fr.json
+     * @throws IOException If a language file cannot be read
+     */
+    public static Map<String, String> loadTranslations(final ResourceManager resourceManager, final String language)
+            throws IOException {
+        final Map<String, String> translations = new HashMap<>();
+        final List<String> languages = language.equals(LanguageManager.DEFAULT_LANGUAGE_CODE) ?
+                List.of(language) : List.of(LanguageManager.DEFAULT_LANGUAGE_CODE, language);
+        for (final String code : languages) {
+            final String path = String.format(Locale.ROOT, "lang/%s.json", code);
+            for (final String namespace : resourceManager.getAllNamespaces()) {
+                for (final Resource resource : resourceManager.getAllResources(new Identifier(namespace, path))) {
+                    try (InputStream inputStream = resource.getInputStream()) {
+                        Language.load(inputStream, translations::put);
+                    }
+                }
+            }
+        }
+        return translations;
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests on the {@link ConfigFileWatcher}.
+ *
+ * @author Case Walker
+ */
+class ConfigFileWatcherTest {
+
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    @DisplayName("A burst of events is due once, a whole window after its last event (Debouncer)")
+    void testDebounce() {
+        ConfigFileWatcher.Debouncer debouncer = new ConfigFileWatcher.Debouncer(300 * MILLISECOND);
+        assertEquals(-1, debouncer.timeoutNanos(0), "Nothing should be pending before any event");
+
+        for (int i = 0; i < 5; i++) {
+            debouncer.event(i * 20 * MILLISECOND);
+            assertFalse(debouncer.isDue(i * 20 * MILLISECOND), "The change should wait for the burst to end");
+        }
+        assertEquals(300 * MILLISECOND, debouncer.timeoutNanos(80 * MILLISECOND),
+                "The window should start over at the last event");
+        assertFalse(debouncer.isDue(379 * MILLISECOND), "The change should not be due before the window ends");
+        assertTrue(debouncer.isDue(380 * MILLISECOND), "The change should be due once the window ends");
+        assertFalse(debouncer.isDue(1000 * MILLISECOND), "A burst of events should be due only once");
+        assertEquals(-1, debouncer.timeoutNanos(1000 * MILLISECOND), "Nothing should be pending after the change");
+    }
+
+    @Test
+    @DisplayName("Only events on watched files, or lost events, are relevant (isRelevant)")
+    void testIsRelevant() {
+        Set<Path> fileNames = Set.of(Path.of("narratorconfigsmod.yml"));
+
+        assertTrue(ConfigFileWatcher.isRelevant(fileNames,
+                List.of(event(StandardWatchEventKinds.ENTRY_MODIFY, Path.of("narratorconfigsmod.yml")))));
+        assertFalse(ConfigFileWatcher.isRelevant(fileNames,
+                List.of(event(StandardWatchEventKinds.ENTRY_MODIFY, Path.of("other.yml")))),
+                "Changes to other files should be ignored");
+        assertTrue(ConfigFileWatcher.isRelevant(fileNames, List.of(event(StandardWatchEventKinds.OVERFLOW, null))),
+                "Lost events may have concerned a watched file");
+    }
+
+    @Test
+    @DisplayName("Writing to a watched file runs the callback")
+    void testWatch() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("narratorconfigs");
+        Path config = directory.resolve("narratorconfigsmod.yml");
+        AtomicInteger changes = new AtomicInteger();
+
+        try (ConfigFileWatcher watcher =
+                     new ConfigFileWatcher(List.of(config), 50, changes::incrementAndGet, "test watcher")) {
+            Files.writeString(config, "chatEnabled: true");
+            // the watch service may poll for changes every few seconds on some platforms, so allow it plenty of time
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (changes.get() == 0 && System.nanoTime() - deadline < 0) {
+                Thread.sleep(50);
+            }
+            assertTrue(changes.get() > 0, "The change should have been noticed");
+            assertTrue(watcher.getChanges() > 0, "The change should be counted");
+        }
+    }
+
+    private static WatchEvent<Path> event(WatchEvent.Kind<?> kind, Path context) {
+        return new WatchEvent<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Kind<Path> kind() {
+                return (Kind<Path>) kind;
+            }
+
+            @Override
+            public int count() {
+                return 1;
+            }
+
+            @Override
+            public Path context() {
+                return context;
+            }
+        };
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests on the {@link LinearRegex} engine and the step budget of {@link RegexFragment}.
+ *
+ * @author Case Walker
+ */
+class LinearRegexTest {
+
+    @Test
+    @DisplayName("Only the regular subset of the syntax is compiled (compile)")
+    void testSupportedSyntax() {
+        for (String regex : List.of("^\\d+, \\d+, \\d+$", "(.*a)*", "a|b|", "(?:ab)+?c", "[^a-c\\d-]x{2,3}",
+                "\\w\\s\\S\\W\\D.", "\\.\\*\\[\\\\", "a{2,}b{0}", "")) {
+            assertNotNull(LinearRegex.compile(regex), "Should be supported: " + regex);
+        }
+        for (String regex : List.of("(a)\\1", "(?=a)a", "(?i)a", "a*+", "\\bword\\b", "[a-z&&[^b]]", "\\p{L}",
+                "\\Qa.b\\E", "a^b", "a$b", "a{5}{2}", "\\x41", "(?<name>a)", "[[a]b]")) {
+            assertNull(LinearRegex.compile(regex), "Should not be supported: " + regex);
+        }
+        assertNull(LinearRegex.compile("(a{100}){200}"), "Automatons over the size limit should not be built");
+    }
+
+    @Test
+    @DisplayName("The engine agrees with java.util.regex on whole-message matches (matches)")
+    void testAgreesWithPattern() {
+        List<String> regexes = List.of("^\\d+, \\d+, \\d+$", "(.*a)*", "a|b|", "(?:ab)+?c", "[^a-c\\d-]x{2,3}",
+                "\\w\\s\\S\\W\\D.", "(a|ab)(c|bcd)(d*)", "x*(y?z|w)+$", "a{2,}b?", "[-ab]*c?", "(|a)+b",
+                ".*\\n.*", "[\\s\\S]a\\.", "(a+)+b", "((x|y){1,3})?z*");
+        String alphabet = "abcdxyzw -.1\n\r \u0085\t";
+        Random random = new Random(0);
+        for (String regex : regexes) {
+            Pattern pattern = Pattern.compile(regex);
+            LinearRegex linear = LinearRegex.compile(regex);
+            assertNotNull(linear, "Should be supported: " + regex);
+            List<String> messages = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                StringBuilder message = new StringBuilder();
+                int length = random.nextInt(8);
+                for (int j = 0; j < length; j++) {
+                    message.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                messages.add(message.toString());
+            }
+            messages.addAll(List.of("", "a", "ab", "abc", "abcd", "1, 2, 3", "aab", "xyzw", "zz"));
+            for (String message : messages) {
+                assertEquals(pattern.matcher(message).matches(), linear.matches(message),
+                        "'" + regex + "' should agree on: " + message);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Nested quantifiers take linear time on long messages (matches)")
+    void testNoCatastrophicBacktracking() {
+        LinearRegex linear = LinearRegex.compile(".*.*.*.*.*y");
+        assertNotNull(linear, "Should be supported");
+
+        long[] shortVisits = new long[1];
+        assertFalse(linear.matches("x".repeat(1000), shortVisits), "There is no 'y'");
+        long[] longVisits = new long[1];
+        assertFalse(linear.matches("x".repeat(2000), longVisits), "There is no 'y'");
+        long[] matchVisits = new long[1];
+        assertTrue(linear.matches("x".repeat(2000) + "y", matchVisits), "There is a 'y'");
+
+        assertTrue(longVisits[0] <= 2001L * linear.size(),
+                "No state should be visited more than once per character: " + longVisits[0]);
+        assertTrue(matchVisits[0] <= 2002L * linear.size(),
+                "No state should be visited more than once per character: " + matchVisits[0]);
+        assertTrue(longVisits[0] <= 2 * shortVisits[0] + linear.size(),
+                "Doubling the message should at most double the work: " + shortVisits[0] + ", " + longVisits[0]);
+    }
+
+    @Test
+    @DisplayName("Backtracking regular expressions are given up on past the step budget (RegexFragment)")
+    void testStepBudget() {
+        List<String> log = new ArrayList<>();
+        RegexFragment fragment = RegexFragment.compile("(x|xx)+\\1y", log::add);
+        RegexFragment linear = RegexFragment.compile("(.*?,){11}P", log::add);
+
+        assertFalse(fragment.isLinear(), "Back-references should not be supported by the linear engine");
+        assertTrue(linear.isLinear(), "Nested quantifiers should be supported by the linear engine");
+        assertTrue(fragment.matches("xxxy"), "Short messages should still be matched");
+        assertFalse(fragment.matches("x".repeat(30)), "The match should be given up on");
+        assertEquals(1, fragment.getOverruns(), "The overrun should be counted");
+        assertEquals(1, log.size(), "The overrun should be logged");
+        assertFalse(linear.matches("1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17,18,19,20,21,22"),
+                "The linear engine should answer");
+        assertTrue(linear.matches("1,2,3,4,5,6,7,8,9,10,11,P"), "The linear engine should match");
+        assertEquals(0, linear.getOverruns(), "The linear engine never overruns");
+        assertTrue(RegexFragment.compile("a.b").matches("a\uD83D\uDE00b"),
+                "Messages with surrogates should be matched by code point");
+    }
+}
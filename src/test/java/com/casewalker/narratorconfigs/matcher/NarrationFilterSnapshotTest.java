@@ -0,0 +1,67 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import com.casewalker.narratorconfigs.config.NarratorConfigsModConfig;
+import com.casewalker.narratorconfigs.pipeline.NarrationPriorities;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests on the {@link NarrationFilterSnapshot}.
+ *
+ * @author Case Walker
+ */
+class NarrationFilterSnapshotTest {
+
+    @Test
+    @DisplayName("The empty snapshot accepts nothing and each next snapshot has the next version (next)")
+    void testNext() {
+        NarratorConfigsModConfig config = new NarratorConfigsModConfig();
+        Map<String, String> translations = Map.of("a", "Hello");
+        NarrationMatcher matcher = new NarrationMatcher(translations, List.of());
+
+        NarrationFilterSnapshot next = NarrationFilterSnapshot.EMPTY.next(
+                config, "en_us", translations, matcher, NarrationPriorities.NONE);
+
+        assertEquals(0, NarrationFilterSnapshot.EMPTY.version(), "The empty snapshot should be the first version");
+        assertFalse(NarrationFilterSnapshot.EMPTY.matcher().matches("Hello"), "The empty snapshot accepts nothing");
+        assertEquals(1, next.version(), "The next snapshot should have the next version");
+        assertSame(config, next.config(), "The configuration should not be copied");
+        assertEquals("en_us", next.language(), "The language should be kept");
+        assertSame(translations, next.translations(), "The translations should not be copied");
+        assertTrue(next.matcher().matches("Hello"), "The next snapshot should use the new matcher");
+        assertSame(NarrationPriorities.NONE, next.priorities(), "The priorities should be kept");
+        assertEquals(2, next.next(config, "en_us", translations, matcher, NarrationPriorities.NONE).version(),
+                "Versions should keep increasing");
+    }
+}
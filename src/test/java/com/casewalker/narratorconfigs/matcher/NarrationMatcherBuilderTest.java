@@ -0,0 +1,224 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests on the {@link NarrationMatcherBuilder}.
+ *
+ * @author Case Walker
+ */
+class NarrationMatcherBuilderTest {
+
+    private static final Map<String, String> TRANSLATIONS = Map.of(
+            "death.attack.arrow", "%1$s was shot by %2$s",
+            "death.attack.cactus", "%1$s was pricked to death",
+            "multiplayer.player.joined", "%s joined the game",
+            "multiplayer.player.left", "%s left the game",
+            "sleep.skipping_night", "Sleeping through this night");
+
+    @Test
+    @DisplayName("Changing one prefix only selects the keys under it again")
+    void testChangedPrefixOnly() {
+        NarrationMatcherBuilder builder = new NarrationMatcherBuilder();
+        builder.build(TRANSLATIONS, List.of("death.", "multiplayer."), List.of(), List.of(), 0, false);
+        assertEquals(5, builder.getReevaluatedKeys(), "First build should select every key");
+        assertEquals(4, builder.getParsedTranslations(), "First build should parse every selected translation");
+
+        NarrationMatcher matcher = builder.build(
+                TRANSLATIONS, List.of("death.", "multiplayer."), List.of("multiplayer.player.left"), List.of(), 0,
+                false);
+
+        assertEquals(1, builder.getReevaluatedKeys(), "Only the key under the disabled prefix should be selected");
+        assertEquals(0, builder.getParsedTranslations(), "No translation should be parsed again");
+        assertEquals(3, matcher.size(), "One translation should have been removed");
+        assertTrue(matcher.matches("Steve joined the game"), "Unchanged translations should still match");
+        assertFalse(matcher.matches("Steve left the game"), "Disabled translation should not match");
+    }
+
+    @Test
+    @DisplayName("Unchanged configuration reuses everything")
+    void testUnchangedConfiguration() {
+        NarrationMatcherBuilder builder = new NarrationMatcherBuilder();
+        builder.build(TRANSLATIONS, List.of("sleep."), List.of(), List.of("^\\d+$"), 0, false);
+
+        NarrationMatcher matcher =
+                builder.build(TRANSLATIONS, List.of("sleep."), List.of(), List.of("^\\d+$"), 0, false);
+
+        assertEquals(0, builder.getReevaluatedKeys(), "No key should be selected again");
+        assertEquals(0, builder.getCompiledRegularExpressions(), "No regular expression should be compiled again");
+        assertTrue(matcher.matches("Sleeping through this night"), "Translation should match");
+        assertTrue(matcher.matches("42"), "Regular expression should match");
+    }
+
+    @Test
+    @DisplayName("New translations select every key again but reuse unchanged parsed translations")
+    void testNewTranslations() {
+        NarrationMatcherBuilder builder = new NarrationMatcherBuilder();
+        builder.build(TRANSLATIONS, List.of("multiplayer."), List.of(), List.of(), 0, false);
+
+        NarrationMatcher matcher = builder.build(
+                Map.of("multiplayer.player.joined", "%s joined the game",
+                        "multiplayer.player.left", "%s a quitté la partie"),
+                List.of("multiplayer."), List.of(), List.of(), 0, false);
+
+        assertEquals(2, builder.getReevaluatedKeys(), "Every key of the new translations should be selected");
+        assertEquals(1, builder.getParsedTranslations(), "Only the changed translation should be parsed");
+        assertTrue(matcher.matches("Steve a quitté la partie"), "Changed translation should match");
+        assertFalse(matcher.matches("Steve left the game"), "Old translation should not match");
+    }
+
+    @Test
+    @DisplayName("Translation keys are accepted if they were selected by the prefixes (matchesTranslation)")
+    void testTranslationKeys() {
+        NarrationMatcherBuilder builder = new NarrationMatcherBuilder();
+        Map<String, String> translations = Map.of(
+                "death.attack.generic", "%1$s died",
+                "death.fell.accident.generic", "%1$s fell from a high place",
+                "chat.type.emote", "* %s %s");
+        NarrationMatcher matcher = builder.build(
+                translations, List.of("death."), List.of("death.fell."), List.of("^\\* Steve .*"), 0, false);
+
+        assertTrue(matcher.matchesTranslation("death.attack.generic", SegmentedText.of("Anything at all")),
+                "Enabled key should be accepted whatever the message");
+        assertFalse(matcher.matchesTranslation("death.attack.unknown", SegmentedText.of("Steve died")),
+                "Unknown key under an enabled prefix should be rejected, as it is not one of the translations");
+        assertFalse(matcher.matchesTranslation("chat.type.emote", SegmentedText.of("* Alex died")),
+                "Disabled key should be rejected even if the message renders like an enabled translation");
+        assertTrue(matcher.matches("* Alex died"), "The same message should still match as plain text");
+        assertFalse(matcher.matchesTranslation("death.fell.accident.generic", SegmentedText.of("Steve died")),
+                "Key under a disabled prefix should be rejected");
+        assertTrue(matcher.matchesTranslation("chat.type.emote", SegmentedText.of("* Steve waves")),
+                "Regular expressions should still be tried on disabled keys");
+    }
+
+    @Test
+    @DisplayName("Lazy regular expressions are only compiled once the index makes them candidates")
+    void testLazyRegularExpressions() {
+        NarrationMatcherBuilder builder = new NarrationMatcherBuilder();
+        NarrationMatcher matcher = builder.build(TRANSLATIONS, List.of(), List.of(),
+                List.of("^Player \\w+$", "^Mob \\w+$", "(unclosed"), 0, true);
+        // the invalid expression has no literal to index it by, so it is a candidate for every message
+
+        assertEquals(0, matcher.getMaterializedPatterns(), "Nothing should be compiled up front");
+        assertTrue(matcher.matches("Player Steve"), "Lazy regular expression should match");
+        assertEquals(2, matcher.getMaterializedPatterns(), "Only the candidates should be compiled");
+        assertFalse(matcher.matches("Other"), "Nothing should match");
+        assertEquals(2, matcher.getMaterializedPatterns(), "Non-candidates should still not be compiled");
+        assertFalse(matcher.matches("(unclosed"), "Invalid regular expression should match nothing");
+        assertTrue(matcher.toString().contains("invalidPatterns=[(unclosed]"), "Invalid expression should be listed");
+
+        matcher = builder.build(TRANSLATIONS, List.of(), List.of(), List.of("^Player \\w+$", "^Mob \\w+$"), 0, false);
+        assertEquals(1, builder.getCompiledRegularExpressions(), "Uncompiled expression should be compiled eagerly");
+        assertEquals(2, matcher.getMaterializedPatterns(), "Everything should be compiled up front");
+    }
+
+    @Test
+    @DisplayName("Invalid regular expressions compiled up front are logged and match nothing, not failing the build")
+    void testInvalidEagerRegularExpressions() {
+        NarrationMatcherBuilder builder = new NarrationMatcherBuilder();
+        List<String> invalid = new ArrayList<>();
+        builder.setInvalidLog(invalid::add);
+
+        NarrationMatcher matcher = builder.build(TRANSLATIONS, List.of(), List.of(),
+                List.of("(unclosed", "^Player \\w+$"), 0, false);
+
+        assertEquals(1, invalid.size(), "The invalid expression should be logged");
+        assertTrue(invalid.get(0).contains("(unclosed"), "The log should name the invalid expression");
+        assertTrue(matcher.matches("Player Steve"), "Valid expressions should still match");
+        assertFalse(matcher.matches("(unclosed"), "Invalid regular expression should match nothing");
+        assertTrue(matcher.toString().contains("invalidPatterns=[(unclosed]"), "Invalid expression should be listed");
+    }
+
+    @Test
+    @DisplayName("Regular expressions are ordered by hits, which are saved and loaded between sessions")
+    void testHitCounts() throws IOException {
+        Path hitCountFile = Files.createTempDirectory("narratorconfigs").resolve("hits.bin");
+        List<String> regularExpressions = List.of("^\\d+$", "^\\w+$");
+        NarrationMatcherBuilder first = new NarrationMatcherBuilder();
+        first.setHitCountFile(hitCountFile);
+        NarrationMatcher matcher = first.build(Map.of(), List.of(), List.of(), regularExpressions, 0, true);
+        assertTrue(matcher.matches("Alex"), "Name should match");
+        assertTrue(matcher.matches("Steve"), "Name should match");
+        first.saveHitCounts();
+
+        NarrationMatcherBuilder second = new NarrationMatcherBuilder();
+        second.setHitCountFile(hitCountFile);
+        matcher = second.build(Map.of(), List.of(), List.of(), regularExpressions, 0, true);
+        assertTrue(matcher.toString().contains("regularExpressions=[^\\w+$, ^\\d+$]"),
+                "The most matched regular expression should come first: " + matcher);
+        assertTrue(matcher.matches("Alex"), "Name should match");
+        assertEquals(1, matcher.getMaterializedPatterns(), "Only the first regular expression should be tried");
+    }
+
+    @Test
+    @DisplayName("Saved hit counts are halved, and include the hits of other builders and dropped regular expressions")
+    void testHitCountDecayAndMerge() throws IOException {
+        Path hitCountFile = Files.createTempDirectory("narratorconfigs").resolve("hits.bin");
+        NarrationMatcherBuilder primary = new NarrationMatcherBuilder();
+        primary.setHitCountFile(hitCountFile);
+        NarrationMatcher matcher = primary.build(Map.of(), List.of(), List.of(), List.of("^\\d+$"), 0, true);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(matcher.matches("42"), "Number should match");
+        }
+        primary.build(Map.of(), List.of(), List.of(), List.of("^\\w+$"), 0, true);
+        NarrationMatcherBuilder secondary = new NarrationMatcherBuilder();
+        matcher = secondary.build(Map.of(), List.of(), List.of(), List.of("^\\w+$"), 0, true);
+        for (int i = 0; i < 6; i++) {
+            assertTrue(matcher.matches("Steve"), "Name should match");
+        }
+
+        assertTrue(primary.saveHitCounts(secondary), "The first save of the session should write the file");
+        assertEquals(Map.of("^\\d+$", 2L, "^\\w+$", 3L), HitCountStore.load(hitCountFile),
+                "Hits of the dropped regular expression and of the other builder should be saved, halved");
+        assertFalse(primary.saveHitCounts(secondary), "Saving again without new hits should not write the file");
+        assertEquals(Map.of("^\\d+$", 2L, "^\\w+$", 3L), HitCountStore.load(hitCountFile),
+                "Saving again in the same session should not halve the counts again");
+        for (int i = 0; i < 2; i++) {
+            assertTrue(matcher.matches("Steve"), "Name should match");
+        }
+        assertTrue(primary.saveHitCounts(secondary), "Saving after new hits should write the file");
+        assertEquals(Map.of("^\\d+$", 2L, "^\\w+$", 4L), HitCountStore.load(hitCountFile),
+                "The new hits should be saved along with the earlier ones");
+
+        NarrationMatcherBuilder nextSession = new NarrationMatcherBuilder();
+        nextSession.setHitCountFile(hitCountFile);
+        nextSession.saveHitCounts();
+        assertEquals(Map.of("^\\d+$", 1L, "^\\w+$", 2L), HitCountStore.load(hitCountFile),
+                "Counts without new hits should fade from session to session");
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import com.casewalker.narratorconfigs.pipeline.NarrationPriorities;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests on the {@link NarrationMatcherCache}.
+ *
+ * @author Case Walker
+ */
+class NarrationMatcherCacheTest {
+
+    private static final Map<String, String> ENGLISH = Map.of("a", "Hello %s");
+    private static final Map<String, String> FRENCH = Map.of("a", "Bonjour %s");
+    private static final List<String> SETTINGS = List.of("a");
+
+    @Test
+    @DisplayName("Matchers are found by language for equal translations, counting hits and misses (get)")
+    void testGet() {
+        NarrationMatcherCache cache = new NarrationMatcherCache(2);
+        NarrationMatcher english = new NarrationMatcher(ENGLISH, List.of());
+        NarrationPriorities priorities =
+                NarrationPriorities.build(ENGLISH, List.of("a"), List.of(), List.of(), List.of());
+        cache.put("en_us", SETTINGS, ENGLISH, english, priorities);
+
+        assertSame(english, cache.get("en_us", SETTINGS, ENGLISH).matcher(), "The cached matcher should be found");
+        assertSame(priorities, cache.get("en_us", SETTINGS, new HashMap<>(ENGLISH)).priorities(),
+                "Equal translations should be enough, and the priorities should be cached along with the matcher");
+        assertNull(cache.get("en_us", SETTINGS, Map.of("a", "Hi %s")), "Changed translations should not reuse the matcher");
+        assertNull(cache.get("fr_fr", SETTINGS, FRENCH), "Nothing should be cached for another language");
+        assertEquals(2, cache.getHits(), "Found matchers should be hits");
+        assertEquals(2, cache.getMisses(), "Missing matchers should be misses");
+    }
+
+    @Test
+    @DisplayName("The least recently used language is evicted beyond the capacity (put, setCapacity)")
+    void testEviction() {
+        NarrationMatcherCache cache = new NarrationMatcherCache(2);
+        cache.put("en_us", SETTINGS, ENGLISH, NarrationMatcher.EMPTY, NarrationPriorities.NONE);
+        cache.put("fr_fr", SETTINGS, FRENCH, NarrationMatcher.EMPTY, NarrationPriorities.NONE);
+        cache.get("en_us", SETTINGS, ENGLISH);
+        cache.put("de_de", SETTINGS, Map.of(), NarrationMatcher.EMPTY, NarrationPriorities.NONE);
+
+        assertTrue(cache.contains("en_us", SETTINGS), "The recently used language should be kept");
+        assertFalse(cache.contains("fr_fr", SETTINGS), "The least recently used language should be evicted");
+        assertTrue(cache.contains("de_de", SETTINGS), "The new language should be cached");
+
+        cache.setCapacity(1);
+        assertEquals(1, cache.size(), "Lowering the capacity should evict");
+        assertTrue(cache.contains("de_de", SETTINGS), "The most recently used language should be kept");
+        cache.setCapacity(0);
+        cache.put("en_us", SETTINGS, ENGLISH, NarrationMatcher.EMPTY, NarrationPriorities.NONE);
+        assertEquals(0, cache.size(), "A capacity of 0 should disable the cache");
+    }
+
+    @Test
+    @DisplayName("Matchers are only found for the settings they were built from (get, contains)")
+    void testSettings() {
+        NarrationMatcherCache cache = new NarrationMatcherCache(NarrationMatcherCache.DEFAULT_CAPACITY);
+        NarrationMatcher english = new NarrationMatcher(ENGLISH, List.of());
+        cache.put("en_us", SETTINGS, ENGLISH, english, NarrationPriorities.NONE);
+
+        assertSame(english, cache.get("en_us", List.of("a"), ENGLISH).matcher(),
+                "Equal settings should find the matcher");
+        assertNull(cache.get("en_us", List.of("b"), ENGLISH), "Other settings should not find the matcher");
+        assertFalse(cache.contains("en_us", List.of("b")), "Nothing should be cached for other settings");
+
+        NarrationMatcher other = new NarrationMatcher(ENGLISH, List.of());
+        cache.put("en_us", List.of("b"), ENGLISH, other, NarrationPriorities.NONE);
+        assertSame(other, cache.get("en_us", List.of("b"), ENGLISH).matcher(),
+                "The matcher for other settings should be cached alongside");
+        assertSame(english, cache.get("en_us", SETTINGS, ENGLISH).matcher(),
+                "Going back to the first settings should find the first matcher");
+    }
+}
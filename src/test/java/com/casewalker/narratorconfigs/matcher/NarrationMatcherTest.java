@@ -0,0 +1,244 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests on the {@link NarrationMatcher}.
+ *
+ * @author Case Walker
+ */
+class NarrationMatcherTest {
+
+    private static final Path LANGUAGE_EXAMPLE =
+            Path.of("src", "main", "resources", "language_examples", "en_us.json");
+
+    @Test
+    @DisplayName("Translations starting with a placeholder match anywhere after the start")
+    void testLeadingPlaceholder() {
+        NarrationMatcher matcher = new NarrationMatcher(Map.of("a", "%s was slain by %s"), List.of());
+
+        assertTrue(matcher.matches("Steve was slain by Zombie"), "Both placeholders should be filled");
+        assertTrue(matcher.matches(" was slain by "), "Placeholders may be empty");
+        assertFalse(matcher.matches("Steve was slain"), "The whole literal text should be required");
+    }
+
+    @Test
+    @DisplayName("Wildcards do not match line terminators, but literal line terminators do")
+    void testLineTerminators() {
+        NarrationMatcher matcher = new NarrationMatcher(Map.of("a", "Hello %s", "b", "Two\nlines"), List.of());
+
+        assertTrue(matcher.matches("Hello there"), "Single line should match");
+        assertFalse(matcher.matches("Hello there\nfriend"), "Wildcards should not cross lines");
+        assertTrue(matcher.matches("Two\nlines"), "Literal line terminators should match");
+        assertFalse(matcher.matches("Two\nlines\n"), "The trailing wildcard should not cross lines");
+    }
+
+    @Test
+    @DisplayName("Empty translations accept any single line")
+    void testEmptyTranslation() {
+        NarrationMatcher matcher = new NarrationMatcher(Map.of("a", ""), List.of());
+
+        assertTrue(matcher.matches(""), "Empty message should match");
+        assertTrue(matcher.matches("anything"), "Any single line should match");
+        assertFalse(matcher.matches("any\nthing"), "Multiple lines should not match");
+    }
+
+    @Test
+    @DisplayName("Translations and regular expressions are both counted and matched")
+    void testRegularExpressions() {
+        NarrationMatcher matcher = new NarrationMatcher(Map.of("a", "A", "b", "B"), List.of("^\\d+$"));
+
+        assertEquals(3, matcher.size(), "Size should count translations and regular expressions");
+        assertTrue(matcher.matches("B"), "Translation should match");
+        assertTrue(matcher.matches("123"), "Regular expression should match");
+        assertFalse(matcher.matches("C"), "Nothing should match");
+        assertFalse(NarrationMatcher.EMPTY.matches(""), "Empty matcher should accept nothing");
+    }
+
+    @Test
+    @DisplayName("Matching translations are found by key, then matching regular expressions (findMatchingPattern)")
+    void testFindMatchingPattern() {
+        NarrationMatcher matcher = new NarrationMatcher(
+                Map.of("a", "%s was shot by %s", "b", "%s was slain", "c", "Hello", "d", "%s was slain by %s"),
+                List.of("^\\d+$", "^1.*"));
+
+        assertEquals("a", matcher.findMatchingPattern("Steve was shot by Skeleton"), "Translation 'a' should match");
+        assertEquals("c", matcher.findMatchingPattern("Hello there"), "Translation 'c' should match");
+        assertTrue(List.of("b", "d").contains(matcher.findMatchingPattern("Steve was slain by Zombie")),
+                "Either translation could match");
+        assertEquals("^\\d+$", matcher.findMatchingPattern("123"), "The first matching regular expression is found");
+        assertEquals("^1.*", matcher.findMatchingPattern("1a"), "The second regular expression should match");
+        assertNull(matcher.findMatchingPattern("Goodbye"), "Nothing should match");
+    }
+
+    @Test
+    @DisplayName("Cached verdicts are counted and bounded (matchesCached)")
+    void testVerdictCache() {
+        NarrationMatcher matcher = new NarrationMatcher(Map.of("a", "Done"), List.of(), 2);
+
+        assertTrue(matcher.matchesCached("Done"), "Accepted message should be accepted");
+        assertTrue(matcher.matchesCached("Done"), "Accepted message should stay accepted when cached");
+        assertFalse(matcher.matchesCached("Back"), "Rejected message should be rejected");
+        assertFalse(matcher.matchesCached("Back"), "Rejected message should stay rejected when cached");
+        assertEquals(2, matcher.getCacheHits(), "Repeated messages should hit the cache");
+        assertEquals(2, matcher.getCacheMisses(), "New messages should miss the cache");
+
+        matcher.matchesCached("Cancel");
+        matcher.matchesCached("Done");
+        assertEquals(4, matcher.getCacheMisses(), "Least recently used message should have been evicted");
+        assertEquals(0, new NarrationMatcher(Map.of(), List.of()).getCacheHits(), "No cache should mean no hits");
+    }
+
+    @Test
+    @DisplayName("Matcher agrees with the per-translation regular expressions it replaces")
+    void testAgreesWithRegularExpressions() throws IOException {
+        Map<String, String> translations;
+        try (Reader reader = Files.newBufferedReader(LANGUAGE_EXAMPLE, StandardCharsets.UTF_8)) {
+            translations = new Gson().fromJson(reader, new TypeToken<Map<String, String>>() {}.getType());
+        }
+        Map<String, String> accepted = translations.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith("death.") || entry.getKey().startsWith("commands."))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        List<Pattern> patterns = accepted.values().stream()
+                .map(translation -> translation.replaceAll("([]\\[.()^$*+?{}|])", "\\\\$1"))
+                .map(translation -> translation.replaceAll("%(\\d+\\\\[$])?[sd]", ".*"))
+                .map(translation -> Pattern.compile("^" + translation + ".*"))
+                .toList();
+        NarrationMatcher matcher = new NarrationMatcher(accepted, List.of());
+
+        List<String> values = new ArrayList<>(translations.values());
+        Random random = new Random(0);
+        for (int i = 0; i < 5000; i++) {
+            String value = values.get(random.nextInt(values.size()));
+            String message = switch (i % 3) {
+                case 0 -> value.replaceAll("%(\\d+\\$)?[sd]", "Player" + i);
+                case 1 -> value.substring(0, random.nextInt(value.length() + 1)) + "\n" + value;
+                default -> "Player" + i + " " + value;
+            };
+            boolean expected = patterns.stream().anyMatch(pattern -> pattern.matcher(message).matches());
+            assertEquals(expected, matcher.matches(message), "Matcher should agree on: " + message);
+            int split = random.nextInt(message.length() + 1);
+            SegmentedText halves = consumer -> {
+                if (consumer.test(message.substring(0, split))) {
+                    consumer.test(message.substring(split));
+                }
+            };
+            assertEquals(expected, matcher.matches(halves), "Segmented matcher should agree on: " + message);
+        }
+    }
+
+    @Test
+    @DisplayName("Translations matched on their own agree with their regular expressions (TranslationFragment)")
+    void testTranslationFragmentsAgreeWithRegularExpressions() throws IOException {
+        Map<String, String> translations;
+        try (Reader reader = Files.newBufferedReader(LANGUAGE_EXAMPLE, StandardCharsets.UTF_8)) {
+            translations = new Gson().fromJson(reader, new TypeToken<Map<String, String>>() {}.getType());
+        }
+        List<String> values = new ArrayList<>(translations.values());
+        values.addAll(List.of("%s", "%%s%", "100%", "%1$s%2$d", "%1s", "a%sb%sc", "Two\nlines %s", "%s\n"));
+        List<NarrationMatcher> matchers = new ArrayList<>();
+        List<Pattern> patterns = new ArrayList<>();
+        for (String value : values) {
+            TranslationFragment fragment = TranslationFragment.parse("key", value);
+            assertEquals(value.replaceAll("%(\\d+\\$)?[sd]", ""), fragment.literal(),
+                    "Placeholders should be removed from: " + value);
+            matchers.add(new NarrationMatcher(Map.of("key", value), List.of()));
+            patterns.add(Pattern.compile("^" + value
+                    .replaceAll("([]\\[.()^$*+?{}|\\\\])", "\\\\$1")
+                    .replaceAll("%(\\d+\\\\[$])?[sd]", ".*") + ".*"));
+        }
+
+        Random random = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            int source = random.nextInt(values.size());
+            String value = values.get(source);
+            String message = switch (i % 4) {
+                case 0 -> value.replaceAll("%(\\d+\\$)?[sd]", "Player" + i);
+                case 1 -> value.replaceAll("%(\\d+\\$)?[sd]", "a\nb");
+                case 2 -> value.substring(0, random.nextInt(value.length() + 1)) + "\n" + value;
+                default -> "Player" + i + " " + value + (i % 8 == 3 ? "\n" : " trailing");
+            };
+            for (int candidate : new int[] {source, random.nextInt(values.size()), values.size() - 1 - i % 8}) {
+                assertEquals(patterns.get(candidate).matcher(message).matches(),
+                        matchers.get(candidate).matches(message),
+                        "'" + values.get(candidate) + "' should agree on: " + message);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Segmented messages are matched the same as whole messages, however they are split")
+    void testSegmentedText() {
+        NarrationMatcher matcher = new NarrationMatcher(
+                Map.of("a", "%s was slain by %s", "b", "Two\nlines", "c", "Hello %s"), List.of("^\\d+$"));
+        List<String> messages = List.of("Steve was slain by Zombie", "Steve was slain", "Two\nlines", "Two\nlines\n",
+                "Hello there", "Hello there\nfriend", "Hello", "123", "12a", "");
+        Random random = new Random(0);
+
+        for (String message : messages) {
+            for (int i = 0; i < 20; i++) {
+                List<String> segments = new ArrayList<>();
+                int start = 0;
+                while (start < message.length()) {
+                    int end = start + random.nextInt(message.length() - start + 1);
+                    segments.add(message.substring(start, end));
+                    start = end;
+                }
+                segments.add("");
+                SegmentedText text = consumer -> {
+                    for (String segment : segments) {
+                        if (!consumer.test(segment)) {
+                            return;
+                        }
+                    }
+                };
+                assertEquals(matcher.matches(message), matcher.matches(text), "Matcher should agree on: " + segments);
+            }
+            assertEquals(matcher.matches(message), matcher.matches(SegmentedText.of(message)),
+                    "Matcher should agree on the single segment: " + message);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.matcher;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests on the {@link RegexLiterals} analysis and the {@link LiteralPrefixTrie} index built from it.
+ *
+ * @author Case Walker
+ */
+class RegexLiteralsTest {
+
+    @Test
+    @DisplayName("Leading literals stop at the first non-literal syntax (leadingLiteral)")
+    void testLeadingLiteral() {
+        assertEquals("test string only", RegexLiterals.leadingLiteral("^test string only$"));
+        assertEquals("Player joined", RegexLiterals.leadingLiteral("Player joined.*"));
+        assertEquals("a.b", RegexLiterals.leadingLiteral("^a\\.b\\d"));
+        assertEquals("ab", RegexLiterals.leadingLiteral("abc?"), "Quantified characters are not required");
+        assertEquals("", RegexLiterals.leadingLiteral("^\\d+, \\d+, \\d+$"));
+        assertEquals("", RegexLiterals.leadingLiteral("(?i)hello"));
+        assertEquals("ab", RegexLiterals.leadingLiteral("ab\uD83D\uDE00?c"),
+                "A quantified supplementary character should be left out whole");
+        assertTrue(Pattern.compile("ab\uD83D\uDE00?c").matcher("abc").matches(), "The leading literal is a prefix");
+    }
+
+    @Test
+    @DisplayName("Top level alternations have no leading literal (leadingLiteral)")
+    void testAlternation() {
+        assertEquals("", RegexLiterals.leadingLiteral("abc|def"));
+        assertEquals("ab", RegexLiterals.leadingLiteral("ab(c|d)"));
+        assertEquals("ab", RegexLiterals.leadingLiteral("ab[|]"));
+    }
+
+    @Test
+    @DisplayName("Longest required literals skip groups, classes and quantified characters (longestRequiredLiteral)")
+    void testLongestRequiredLiteral() {
+        assertEquals(" was slain by ", RegexLiterals.longestRequiredLiteral(".* was slain by .*"));
+        assertEquals(" fell", RegexLiterals.longestRequiredLiteral("\\w+ (off|from) [a-z]+ fell"));
+        assertEquals("abc", RegexLiterals.longestRequiredLiteral("x*abcd+e?"));
+        assertEquals("a.", RegexLiterals.longestRequiredLiteral("a\\.\\.*\\..b"));
+        assertEquals("", RegexLiterals.longestRequiredLiteral(".*a|.*b"));
+        assertEquals("ab", RegexLiterals.longestRequiredLiteral(".*ab(?i)cdef"), "Flags should end the search");
+        assertEquals("ab", RegexLiterals.longestRequiredLiteral(".*ab\uD83D\uDE00?c"),
+                "A quantified supplementary character should be left out whole");
+    }
+
+    @Test
+    @DisplayName("Signatures count the atoms quantifiers cannot skip, and require their characters (signature)")
+    void testSignature() {
+        FeasibilitySignature numbers = RegexLiterals.signature("^\\d+, \\d+, \\d+$");
+        assertEquals(7, numbers.minimumLength(), "Three digits and two separators are required");
+        assertEquals(FeasibilitySignature.characterBits(", "), numbers.requiredCharacters());
+        assertEquals(2, RegexLiterals.signature("abc?").minimumLength(), "Optional characters are not counted");
+        assertEquals(3, RegexLiterals.signature("a{3}b*+").minimumLength(), "Bounded repetition is counted");
+        assertEquals(2, RegexLiterals.signature("x(yz)+w").minimumLength(), "Groups are not counted");
+        assertEquals(2, RegexLiterals.signature("a.*?[bc]").minimumLength());
+        assertEquals(1, RegexLiterals.signature("a\\Qbc\\E").minimumLength(), "Quoting should end the search");
+        assertEquals(FeasibilitySignature.NONE, RegexLiterals.signature("(?i)hello"), "Flags should end the search");
+        assertEquals(FeasibilitySignature.NONE, RegexLiterals.signature("abc|de"));
+
+        FeasibilitySignature slain = RegexLiterals.signature(".* was slain by .*");
+        assertFalse(slain.admits(5, FeasibilitySignature.characterBits("Hello")), "Short messages are ruled out");
+        assertTrue(slain.admits(25, FeasibilitySignature.characterBits("Steve was slain by Zombie")));
+        assertFalse(slain.admits(25, FeasibilitySignature.characterBits("Steve was shot by Skeleton")),
+                "Messages missing a required character are ruled out");
+    }
+
+    @Test
+    @DisplayName("Signatures never rule out a message the regular expression matches (signature)")
+    void testSignatureAgreesWithRegularExpressions() {
+        List<String> regexes = List.of("^\\d+, \\d+, \\d+$", "ab?c*d{2}e{0,1}", "(ab)+c", "[xy]+z?\\.", "a+?b",
+                ".*\\bend\\b.*", "a{2}{2}", "\\w\\s-\\S");
+        Random random = new Random(0);
+        String alphabet = "abcdexyz., -0123\n";
+        for (String regex : regexes) {
+            Pattern pattern = Pattern.compile(regex);
+            FeasibilitySignature signature = RegexLiterals.signature(regex);
+            for (int i = 0; i < 20000; i++) {
+                StringBuilder message = new StringBuilder();
+                int length = random.nextInt(10);
+                for (int j = 0; j < length; j++) {
+                    message.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                String string = message.toString();
+                if (pattern.matcher(string).matches()) {
+                    assertTrue(signature.admits(string.length(), FeasibilitySignature.characterBits(string)),
+                            "Signature of '" + regex + "' should admit: " + string);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Aho-Corasick visits every literal occurring in the string (AhoCorasick)")
+    void testAhoCorasick() {
+        AhoCorasick automaton = new AhoCorasick();
+        automaton.add("he", 0);
+        automaton.add("she", 1);
+        automaton.add("his", 2);
+        automaton.add("hers", 3);
+        automaton.build();
+        List<Integer> visited = new ArrayList<>();
+
+        assertFalse(automaton.anyMatch("ushers", id -> !visited.add(id)), "No visit should be accepted");
+        assertEquals(List.of(1, 0, 3), visited, "'she' and 'he' end together, then 'hers'");
+        assertTrue(automaton.anyMatch("this", id -> id == 2), "'his' should be found");
+        assertFalse(automaton.anyMatch("hi", id -> true), "Nothing should be found");
+    }
+
+    @Test
+    @DisplayName("Trie visits only IDs whose prefix the string starts with (LiteralPrefixTrie)")
+    void testTrie() {
+        LiteralPrefixTrie trie = new LiteralPrefixTrie();
+        trie.add("", 0);
+        trie.add("ab", 1);
+        trie.add("abc", 2);
+        trie.add("b", 3);
+        List<Integer> visited = new ArrayList<>();
+
+        assertFalse(trie.anyMatch("abd", id -> !visited.add(id)), "No visit should be accepted");
+        assertEquals(List.of(0, 1), visited, "Only the empty and 'ab' prefixes should be visited");
+        assertTrue(trie.anyMatch("abcd", id -> id == 2), "The 'abc' prefix should be visited");
+        assertFalse(trie.anyMatch("c", id -> id == 3), "The 'b' prefix should not be visited");
+    }
+
+    @Test
+    @DisplayName("Accepted IDs move forward among IDs sharing a prefix (LiteralPrefixTrie)")
+    void testTriePromotion() {
+        LiteralPrefixTrie trie = new LiteralPrefixTrie();
+        trie.add("", 0);
+        trie.add("", 1);
+        trie.add("", 2);
+        List<Integer> visited = new ArrayList<>();
+
+        assertTrue(trie.anyMatch("a", id -> id == 2), "The last ID should be accepted");
+        assertFalse(trie.anyMatch("a", id -> !visited.add(id)), "No visit should be accepted");
+        assertEquals(List.of(0, 2, 1), visited, "The accepted ID should have moved one place forward");
+    }
+}
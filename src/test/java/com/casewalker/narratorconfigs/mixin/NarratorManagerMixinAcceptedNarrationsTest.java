@@ -25,6 +25,7 @@ package com.casewalker.narratorconfigs.mixin;
 
 import com.casewalker.modutils.config.ConfigHandler;
 import com.casewalker.narratorconfigs.config.NarratorConfigsModConfig;
+import com.casewalker.narratorconfigs.matcher.NarrationMatcher;
 import net.minecraft.client.resource.language.TranslationStorage;
 import net.minecraft.util.Language;
 import org.easymock.EasyMock;
@@ -37,8 +38,6 @@ import org.powermock.reflect.Whitebox;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.regex.Pattern;
 
 import static com.casewalker.narratorconfigs.testutils.TestUtils.NarratorManagerMixinTestImpl;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -105,7 +104,7 @@ class NarratorManagerMixinAcceptedNarrationsTest {
         config.get().setEnabledPrefixes(List.of("a"));
         Map<String, String> translations = Map.of("a", "A", "a.1", "X", "b", "B", "c", "C");
 
-        Set<Pattern> patterns = narratorManagerMixin.createAcceptedNarrations(translations);
+        NarrationMatcher patterns = narratorManagerMixin.createAcceptedNarrations(translations);
 
         assertNotNull(patterns, "Patterns should not be null");
         assertEquals(2, patterns.size(), "There should only be two returned patterns");
@@ -122,7 +121,7 @@ class NarratorManagerMixinAcceptedNarrationsTest {
         config.get().setDisabledPrefixes(List.of("a.2"));
         Map<String, String> translations = Map.of("a.1", "A1", "a.2", "A2", "a.3", "A3");
 
-        Set<Pattern> patterns = narratorManagerMixin.createAcceptedNarrations(translations);
+        NarrationMatcher patterns = narratorManagerMixin.createAcceptedNarrations(translations);
 
         assertNotNull(patterns, "Patterns should not be null");
         assertEquals(2, patterns.size(), "There should be two returned patterns");
@@ -131,13 +130,29 @@ class NarratorManagerMixinAcceptedNarrationsTest {
         assertFalse(narratorManagerMixin.narrationIsAccepted(patterns, "A2"), "The patterns should not match 'A2'");
     }
 
+    @Test
+    @DisplayName("Longest matching prefix decides between enabled and disabled (createAcceptedNarrations)")
+    void testAcceptedNarrationsLongestPrefix() {
+        config.get().setEnabledPrefixes(List.of("a", "a.2.x", "b"));
+        config.get().setDisabledPrefixes(List.of("a.2", "b"));
+        Map<String, String> translations = Map.of("a.1", "A1", "a.2.y", "A2Y", "a.2.x", "A2X", "b.1", "B1");
+
+        NarrationMatcher patterns = narratorManagerMixin.createAcceptedNarrations(translations);
+
+        assertEquals(2, patterns.size(), "There should be two returned patterns");
+        assertTrue(narratorManagerMixin.narrationIsAccepted(patterns, "A1"), "The patterns should match 'A1'");
+        assertTrue(narratorManagerMixin.narrationIsAccepted(patterns, "A2X"), "The patterns should match 'A2X'");
+        assertFalse(narratorManagerMixin.narrationIsAccepted(patterns, "A2Y"), "The patterns should not match 'A2Y'");
+        assertFalse(narratorManagerMixin.narrationIsAccepted(patterns, "B1"), "The patterns should not match 'B1'");
+    }
+
     @Test
     @DisplayName("Includes custom regexes (createAcceptedNarrations)")
     void testAcceptedNarrationsCustomRegexes() {
         config.get().setEnabledRegularExpressions(List.of("^test string only$"));
         Map<String, String> translations = Map.of("a.1", "A1", "a.2", "A2", "a.3", "A3");
 
-        Set<Pattern> patterns = narratorManagerMixin.createAcceptedNarrations(translations);
+        NarrationMatcher patterns = narratorManagerMixin.createAcceptedNarrations(translations);
 
         assertNotNull(patterns, "Patterns should not be null");
         assertEquals(1, patterns.size(), "There should be one returned pattern");
@@ -153,7 +168,7 @@ class NarratorManagerMixinAcceptedNarrationsTest {
         config.get().setEnabledPrefixes(List.of("a"));
         Map<String, String> translations = Map.of("a", complicatedValue);
 
-        Set<Pattern> patterns = narratorManagerMixin.createAcceptedNarrations(translations);
+        NarrationMatcher patterns = narratorManagerMixin.createAcceptedNarrations(translations);
 
         assertNotNull(patterns, "Patterns should not be null");
         assertTrue(narratorManagerMixin.narrationIsAccepted(patterns, complicatedValue),
@@ -169,7 +184,7 @@ class NarratorManagerMixinAcceptedNarrationsTest {
                 "death.attack.inWall.player", "%1$s suffocated in a wall whilst fighting %2$s"
         );
 
-        Set<Pattern> patterns = narratorManagerMixin.createAcceptedNarrations(translations);
+        NarrationMatcher patterns = narratorManagerMixin.createAcceptedNarrations(translations);
 
         assertTrue(narratorManagerMixin.narrationIsAccepted(patterns, "Screen element 'banana' out of 25"),
                 "The patterns should match a version of the screen-element translation");
@@ -189,7 +204,7 @@ class NarratorManagerMixinAcceptedNarrationsTest {
         config.get().setEnabledPrefixes(List.of("a"));
         Map<String, String> translations = Map.of("a", "It should match this sentence");
 
-        Set<Pattern> patterns = narratorManagerMixin.createAcceptedNarrations(translations);
+        NarrationMatcher patterns = narratorManagerMixin.createAcceptedNarrations(translations);
 
         assertTrue(narratorManagerMixin.narrationIsAccepted(patterns, "It should match this sentence"),
                 "Exact match should work");
@@ -25,6 +25,7 @@ package com.casewalker.narratorconfigs.mixin;
 
 import com.casewalker.modutils.config.ConfigHandler;
 import com.casewalker.narratorconfigs.config.NarratorConfigsModConfig;
+import com.casewalker.narratorconfigs.matcher.NarrationMatcher;
 import net.minecraft.text.Text;
 import net.minecraft.util.Pair;
 import org.junit.jupiter.api.BeforeAll;
@@ -36,9 +37,8 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import java.nio.file.Path;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.function.Supplier;
-import java.util.regex.Pattern;
 
 import static com.casewalker.narratorconfigs.testutils.TestUtils.DummyNarrator;
 import static com.casewalker.narratorconfigs.testutils.TestUtils.NarratorManagerMixinTestImpl;
@@ -63,6 +63,7 @@ public class NarratorManagerMixinNarrationMethodsTest {
         config = new ConfigHandler<>(NarratorConfigsModConfig.class);
         config.initialize(List.of(Path.of("src", "test", "resources", "narratorconfigsmod.json")));
         Whitebox.setInternalState(narratorManagerMixin, "config", config);
+        narratorManagerMixin.setAcceptedNarrations(NarrationMatcher.EMPTY);
         narrator = new DummyNarrator();
     }
 
@@ -104,7 +105,7 @@ public class NarratorManagerMixinNarrationMethodsTest {
         config.get().setChatEnabled(true);
         narrator.active = false;
         narratorManagerMixin.narratorModeIsCustom = true;
-        Whitebox.setInternalState(narratorManagerMixin, "acceptedNarrations", Set.of(Pattern.compile("^testing$")));
+        narratorManagerMixin.setAcceptedNarrations(new NarrationMatcher(Map.of(), List.of("^testing$")));
         CallbackInfo onNarrateCI = new CallbackInfo("test", true);
 
         narratorManagerMixin.onNarrateNCM2("text1", onNarrateCI);
@@ -122,7 +123,7 @@ public class NarratorManagerMixinNarrationMethodsTest {
         config.get().setChatEnabled(true);
         narrator.active = false;
         narratorManagerMixin.narratorModeIsCustom = true;
-        Whitebox.setInternalState(narratorManagerMixin, "acceptedNarrations", Set.of(Pattern.compile("^testing$")));
+        narratorManagerMixin.setAcceptedNarrations(new NarrationMatcher(Map.of(), List.of("^testing$")));
         CallbackInfo onOnChatMessageCI = new CallbackInfo("test", true);
 
         narratorManagerMixin.onNarrateChatMessageNCM2(() -> Text.of("text2"), onOnChatMessageCI);
@@ -171,7 +172,7 @@ public class NarratorManagerMixinNarrationMethodsTest {
         config.get().setChatEnabled(true);
         narrator.active = true;
         narratorManagerMixin.narratorModeIsCustom = true;
-        Whitebox.setInternalState(narratorManagerMixin, "acceptedNarrations", Set.of(Pattern.compile("^testing$")));
+        narratorManagerMixin.setAcceptedNarrations(new NarrationMatcher(Map.of(), List.of("^testing$")));
         CallbackInfo onOnChatMessageCI = new CallbackInfo("test", true);
 
         narratorManagerMixin.onNarrateChatMessageNCM2(() -> Text.of("wrong message, not accepted"), onOnChatMessageCI);
@@ -186,7 +187,7 @@ public class NarratorManagerMixinNarrationMethodsTest {
     void testNarrationSucceedsWithRightText() {
         narrator.active = true;
         narratorManagerMixin.narratorModeIsCustom = true;
-        Whitebox.setInternalState(narratorManagerMixin, "acceptedNarrations", Set.of(Pattern.compile("^testing$")));
+        narratorManagerMixin.setAcceptedNarrations(new NarrationMatcher(Map.of(), List.of("^testing$")));
         CallbackInfo onNarrateCI = new CallbackInfo("test", true);
 
         narratorManagerMixin.onNarrateNCM2("testing", onNarrateCI);
@@ -201,7 +202,7 @@ public class NarratorManagerMixinNarrationMethodsTest {
     void testNoNarrationIfNoMatch() {
         narrator.active = true;
         narratorManagerMixin.narratorModeIsCustom = true;
-        Whitebox.setInternalState(narratorManagerMixin, "acceptedNarrations", Set.of(Pattern.compile("^testing$")));
+        narratorManagerMixin.setAcceptedNarrations(new NarrationMatcher(Map.of(), List.of("^testing$")));
         CallbackInfo onNarrateCI = new CallbackInfo("test", true);
 
         narratorManagerMixin.onNarrateNCM2("some different string that doesn't match", onNarrateCI);
@@ -215,7 +216,7 @@ public class NarratorManagerMixinNarrationMethodsTest {
     @DisplayName("System message should not narrate if the text is accepted but the mode is wrong (forceNarrateOnMode)")
     void testNoNarrationIfSystemMessageMatchesWithBadMode() {
         narratorManagerMixin.narratorModeIsCustom = false;
-        Whitebox.setInternalState(narratorManagerMixin, "acceptedNarrations", Set.of(Pattern.compile("^testing$")));
+        narratorManagerMixin.setAcceptedNarrations(new NarrationMatcher(Map.of(), List.of("^testing$")));
 
         boolean narrated = narratorManagerMixin.forceNarrateOnMode(Text.of("testing"));
 
@@ -227,7 +228,7 @@ public class NarratorManagerMixinNarrationMethodsTest {
     @DisplayName("System message should not narrate if the text isn't accepted (forceNarrateOnMode)")
     void testNoNarrationIfSystemMessageDoesNotMatch() {
         narratorManagerMixin.narratorModeIsCustom = true;
-        Whitebox.setInternalState(narratorManagerMixin, "acceptedNarrations", Set.of(Pattern.compile("^testing$")));
+        narratorManagerMixin.setAcceptedNarrations(new NarrationMatcher(Map.of(), List.of("^testing$")));
 
         boolean narrated = narratorManagerMixin.forceNarrateOnMode(Text.of("not testing dude"));
 
@@ -239,7 +240,7 @@ public class NarratorManagerMixinNarrationMethodsTest {
     @DisplayName("System message should narrate if the text is accepted and the mode is right (forceNarrateOnMode)")
     void testNarrationSucceedsWithRightTextAndMode() {
         narratorManagerMixin.narratorModeIsCustom = true;
-        Whitebox.setInternalState(narratorManagerMixin, "acceptedNarrations", Set.of(Pattern.compile("^testing$")));
+        narratorManagerMixin.setAcceptedNarrations(new NarrationMatcher(Map.of(), List.of("^testing$")));
 
         boolean narrated = narratorManagerMixin.forceNarrateOnMode(Text.of("testing"));
 
@@ -0,0 +1,225 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.pipeline;
+
+import com.casewalker.narratorconfigs.config.NarratorConfigsModConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests on the {@link ChatRateLimiter}.
+ *
+ * @author Case Walker
+ */
+class ChatRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final NarrationScheduler.Priority NORMAL = NarrationScheduler.Priority.NORMAL;
+
+    @Test
+    @DisplayName("Overflowing messages are summarized once a token is free (SUMMARIZE)")
+    void testSummarize() {
+        List<String> said = new ArrayList<>();
+        ChatRateLimiter limiter = limiter(said, ChatRateLimiter.OverflowPolicy.SUMMARIZE);
+
+        for (int i = 0; i < 14; i++) {
+            limiter.submit("message " + i, NORMAL, 0);
+        }
+        assertEquals(List.of("message 0", "message 1"), said, "Only the burst should be narrated right away");
+
+        limiter.flush(SECOND);
+        assertEquals("12 more chat messages", said.get(2), "The overflow should be summarized");
+        limiter.submit("message 14", NORMAL, SECOND);
+        assertEquals(3, said.size(), "No token should be left after the summary");
+        limiter.flush(2 * SECOND);
+        assertEquals("1 more chat message", said.get(3), "A single overflowed message should be summarized");
+        assertEquals(13, limiter.getDropped(), "Summarized messages should be counted as dropped");
+    }
+
+    @Test
+    @DisplayName("Messages keep their priority, and a summary takes the highest priority it stands for")
+    void testPriorities() {
+        List<NarrationScheduler.Priority> priorities = new ArrayList<>();
+        ChatRateLimiter limiter = new ChatRateLimiter((message, priority) -> priorities.add(priority), false);
+        limiter.configure(1, 1, ChatRateLimiter.OverflowPolicy.SUMMARIZE);
+        limiter.flush(0);
+
+        limiter.submit("low", NarrationScheduler.Priority.LOW, 0);
+        limiter.submit("overflowed low", NarrationScheduler.Priority.LOW, 0);
+        limiter.submit("overflowed normal", NORMAL, 0);
+        limiter.flush(SECOND);
+        limiter.submit("overflowed low again", NarrationScheduler.Priority.LOW, SECOND);
+        limiter.flush(2 * SECOND);
+
+        assertEquals(List.of(NarrationScheduler.Priority.LOW, NORMAL, NarrationScheduler.Priority.LOW), priorities,
+                "Each summary should take the highest priority of the messages it stands for");
+    }
+
+    @Test
+    @DisplayName("Backlogged messages are narrated in order, dropping the oldest when full (DROP_OLDEST)")
+    void testDropOldest() {
+        List<String> said = new ArrayList<>();
+        ChatRateLimiter limiter = limiter(said, ChatRateLimiter.OverflowPolicy.DROP_OLDEST);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.submit("message " + i, NORMAL, 0);
+        }
+        assertEquals(2, limiter.getBacklog(), "The backlog should hold at most the burst size");
+        limiter.flush(2 * SECOND);
+
+        assertEquals(List.of("message 0", "message 1", "message 3", "message 4"), said,
+                "The oldest backlogged message should have been dropped");
+    }
+
+    @Test
+    @DisplayName("Backlogged messages are narrated in order, dropping new messages when full (DROP_NEWEST)")
+    void testDropNewest() {
+        List<String> said = new ArrayList<>();
+        ChatRateLimiter limiter = limiter(said, ChatRateLimiter.OverflowPolicy.DROP_NEWEST);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.submit("message " + i, NORMAL, 0);
+        }
+        limiter.flush(SECOND);
+        limiter.submit("message 5", NORMAL, SECOND);
+
+        assertEquals(List.of("message 0", "message 1", "message 2"), said,
+                "New messages should wait behind the backlog, and the newest should have been dropped");
+        limiter.flush(3 * SECOND);
+        assertEquals(List.of("message 0", "message 1", "message 2", "message 3", "message 5"), said,
+                "The backlog should drain in order");
+    }
+
+    @Test
+    @DisplayName("Removing the limit narrates everything, including what was waiting")
+    void testUnlimited() {
+        List<String> said = new ArrayList<>();
+        ChatRateLimiter limiter = limiter(said, ChatRateLimiter.OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 3; i++) {
+            limiter.submit("message " + i, NORMAL, 0);
+        }
+
+        limiter.configure(0, 2, ChatRateLimiter.OverflowPolicy.DROP_OLDEST);
+        limiter.submit("message 3", NORMAL, 0);
+
+        assertEquals(List.of("message 0", "message 1", "message 2", "message 3"), said,
+                "Everything should be narrated in order");
+    }
+
+    @Test
+    @DisplayName("The default configuration narrates every chat message, however many arrive in a row")
+    void testDefaultConfig() {
+        List<String> said = new ArrayList<>();
+        ChatRateLimiter limiter = new ChatRateLimiter((message, priority) -> said.add(message), false);
+        NarratorConfigsModConfig config = new NarratorConfigsModConfig();
+        limiter.configure(config.getChatNarrationRate(), config.getChatNarrationBurst(),
+                config.getChatOverflowPolicy());
+
+        for (int i = 0; i < 100; i++) {
+            limiter.submit("message " + i, NORMAL, 0);
+        }
+        assertEquals(100, said.size(), "Every chat message should be narrated right away");
+        assertEquals("message 99", said.get(99), "The chat messages should be narrated in order");
+        assertEquals(0, limiter.getDropped(), "No chat message should be dropped");
+    }
+
+    @Test
+    @DisplayName("Backlogged messages are narrated by themselves as tokens become free")
+    void testScheduledFlush() throws InterruptedException {
+        List<String> said = new CopyOnWriteArrayList<>();
+        CountDownLatch secondSpoken = new CountDownLatch(1);
+        AtomicLong clock = new AtomicLong();
+        ChatRateLimiter limiter = new ChatRateLimiter((message, priority) -> {
+            said.add(message);
+            if (message.equals("second")) {
+                secondSpoken.countDown();
+            }
+        }, true, clock::get);
+        limiter.configure(50, 1, ChatRateLimiter.OverflowPolicy.DROP_NEWEST);
+
+        limiter.submit("first", NORMAL);
+        limiter.submit("second", NORMAL);
+        assertEquals(List.of("first"), said, "The second message should wait for a token");
+        clock.set(SECOND);
+
+        assertTrue(secondSpoken.await(5, TimeUnit.SECONDS), "The backlogged message should be narrated");
+        assertEquals(List.of("first", "second"), said, "The backlogged message should be narrated after the first");
+    }
+
+    @Test
+    @DisplayName("A message released while a scheduled flush is still speaking is narrated after it")
+    void testOrderAcrossThreads() throws InterruptedException {
+        List<String> said = new CopyOnWriteArrayList<>();
+        CountDownLatch flushSpeaking = new CountDownLatch(1);
+        CountDownLatch laterSpoken = new CountDownLatch(1);
+        AtomicLong clock = new AtomicLong();
+        ChatRateLimiter limiter = new ChatRateLimiter((message, priority) -> {
+            if (message.equals("message 5")) {
+                // the flush thread speaks this one slowly, giving a later message the chance to overtake it
+                flushSpeaking.countDown();
+                try {
+                    laterSpoken.await(500, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (message.equals("message 6")) {
+                laterSpoken.countDown();
+            }
+            said.add(message);
+        }, true, clock::get);
+        limiter.configure(20, 5, ChatRateLimiter.OverflowPolicy.DROP_NEWEST);
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            expected.add("message " + i);
+            limiter.submit("message " + i, NORMAL);
+        }
+        // one token is free for the flush thread to take message 5, and two more for the next message to take
+        // message 6 along with itself while message 5 is still being spoken
+        clock.set(SECOND / 20);
+        assertTrue(flushSpeaking.await(5, TimeUnit.SECONDS), "The flush thread should narrate message 5");
+        clock.set(3 * SECOND / 20);
+        expected.add("message 7");
+        limiter.submit("message 7", NORMAL);
+
+        assertEquals(expected, said, "Every chat message should be narrated, in the order it arrived");
+    }
+
+    private static ChatRateLimiter limiter(final List<String> said, final ChatRateLimiter.OverflowPolicy policy) {
+        ChatRateLimiter limiter = new ChatRateLimiter((message, priority) -> said.add(message), false);
+        limiter.configure(1, 2, policy);
+        limiter.flush(0);
+        return limiter;
+    }
+}
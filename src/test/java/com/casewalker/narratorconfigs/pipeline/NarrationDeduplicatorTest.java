@@ -0,0 +1,88 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.pipeline;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests on the {@link NarrationDeduplicator}.
+ *
+ * @author Case Walker
+ */
+class NarrationDeduplicatorTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    @DisplayName("Identical narrations are suppressed within the window only")
+    void testWindow() {
+        NarrationDeduplicator deduplicator = new NarrationDeduplicator();
+        deduplicator.setWindowMillis(100);
+
+        assertFalse(deduplicator.isRepeat("Done", 0), "First narration should not be suppressed");
+        assertTrue(deduplicator.isRepeat(new String("Done"), 50 * MILLIS), "Equal narration should be suppressed");
+        assertFalse(deduplicator.isRepeat("Cancel", 60 * MILLIS), "Other narration should not be suppressed");
+        assertFalse(deduplicator.isRepeat("Done", 150 * MILLIS), "Narration after the window should not be suppressed");
+        assertTrue(deduplicator.isRepeat("Done", 200 * MILLIS), "The window should start over when narrated again");
+        assertEquals(2, deduplicator.getSuppressed(), "Suppressed narrations should be counted");
+    }
+
+    @Test
+    @DisplayName("A narration repeating faster than the window is narrated once, until it stops for a whole window")
+    void testRepeatsWithinWindow() {
+        NarrationDeduplicator deduplicator = new NarrationDeduplicator();
+        deduplicator.setWindowMillis(100);
+
+        assertFalse(deduplicator.isRepeat("Loading", 0), "First narration should not be suppressed");
+        for (int i = 1; i <= 20; i++) {
+            assertTrue(deduplicator.isRepeat("Loading", i * 50 * MILLIS),
+                    "A narration seen again within the window should stay suppressed, repeat " + i);
+        }
+        assertEquals(20, deduplicator.getSuppressed(), "Every repeat should be suppressed");
+        assertFalse(deduplicator.isRepeat("Loading", 1100 * MILLIS),
+                "Narration after a whole window without it should not be suppressed");
+    }
+
+    @Test
+    @DisplayName("Only the most recent narrations are remembered, and a window of 0 suppresses nothing")
+    void testRingAndDisabled() {
+        NarrationDeduplicator deduplicator = new NarrationDeduplicator();
+        deduplicator.setWindowMillis(100);
+        for (int i = 0; i < 100; i++) {
+            assertFalse(deduplicator.isRepeat("Narration " + i, i), "Distinct narrations should not be suppressed");
+        }
+        assertFalse(deduplicator.isRepeat("Narration 0", 100), "Old narrations should have been forgotten");
+        assertTrue(deduplicator.isRepeat("Narration 99", 101), "Recent narrations should be remembered");
+
+        deduplicator.setWindowMillis(0);
+        assertFalse(deduplicator.isRepeat("Narration 99", 102), "Nothing should be suppressed without a window");
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.pipeline;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests on the {@link NarrationMetrics}.
+ *
+ * @author Case Walker
+ */
+class NarrationMetricsTest {
+
+    @Test
+    @DisplayName("Messages and verdicts are counted per entry point")
+    void testCounts() {
+        NarrationMetrics metrics = new NarrationMetrics();
+        metrics.recordSeen(Narration.Source.GAME);
+        metrics.recordSeen(Narration.Source.GAME);
+        metrics.recordSeen(Narration.Source.CHAT);
+        metrics.recordVerdict(Narration.Source.GAME, true, 10);
+        metrics.recordVerdict(Narration.Source.GAME, false, 10);
+
+        assertEquals(2, metrics.getSeen(Narration.Source.GAME), "Game messages should be counted");
+        assertEquals(1, metrics.getSeen(Narration.Source.CHAT), "Chat messages should be counted");
+        assertEquals(0, metrics.getSeen(Narration.Source.SYSTEM), "No system narration should be counted");
+        assertEquals(1, metrics.getAccepted(Narration.Source.GAME), "Accepted game message should be counted");
+        assertEquals(1, metrics.getRejected(Narration.Source.GAME), "Rejected game message should be counted");
+
+        metrics.reset();
+        assertEquals(0, metrics.getSeen(Narration.Source.GAME), "Counts should be cleared");
+    }
+
+    @Test
+    @DisplayName("Latency percentiles are bounded by their power-of-two bucket and the maximum")
+    void testLatencyPercentiles() {
+        NarrationMetrics metrics = new NarrationMetrics();
+        assertEquals(0, metrics.getLatencyPercentileNanos(0.5), "Nothing classified should mean no latency");
+
+        for (int i = 0; i < 98; i++) {
+            metrics.recordVerdict(Narration.Source.SYSTEM, true, 1_000);
+        }
+        metrics.recordVerdict(Narration.Source.SYSTEM, true, 100_000);
+        metrics.recordVerdict(Narration.Source.SYSTEM, true, 200_000);
+
+        assertEquals(1_023, metrics.getLatencyPercentileNanos(0.5), "Median should be the bucket of 1000ns");
+        assertEquals(131_071, metrics.getLatencyPercentileNanos(0.99), "p99 should be the bucket of 100000ns");
+        assertEquals(200_000, metrics.getLatencyPercentileNanos(1), "p100 should be the maximum itself");
+    }
+
+    @Test
+    @DisplayName("Reports include reloads and registered gauges")
+    void testReport() {
+        NarrationMetrics metrics = new NarrationMetrics();
+        metrics.recordReload(2_500_000);
+        metrics.registerGauge("patterns", () -> 42);
+
+        List<String> report = metrics.report();
+
+        assertEquals(4, report.size(), "Report should have one line per kind of metric");
+        assertEquals("reloads: 1, last took 2500.0us", report.get(2), "Reload should be reported");
+        assertEquals("gauges: patterns=42", report.get(3), "Gauge should be read when reporting");
+        assertTrue(metrics.toString().contains("game=0/0/0"), "Entry points should be reported without messages");
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.pipeline;
+
+import com.casewalker.narratorconfigs.matcher.SegmentedText;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests on the {@link NarrationPipeline}.
+ *
+ * @author Case Walker
+ */
+class NarrationPipelineTest {
+
+    @Test
+    @DisplayName("Queued narrations are handled in order off the submitting thread")
+    void testOrder() throws InterruptedException {
+        List<String> handled = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(100);
+        NarrationPipeline pipeline = new NarrationPipeline("test", narration -> {
+            handled.add(narration.message().asString());
+            threads.add(Thread.currentThread());
+            done.countDown();
+        });
+        pipeline.configure(100, NarrationPipeline.DropPolicy.DROP_NEWEST);
+
+        for (int i = 0; i < 100; i++) {
+            String message = "message " + i;
+            assertTrue(pipeline.submit(narration(message)), "Narration should be queued");
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS), "Every narration should be handled");
+        for (int i = 0; i < 100; i++) {
+            assertEquals("message " + i, handled.get(i), "Narrations should be handled in order");
+        }
+        assertFalse(threads.contains(Thread.currentThread()), "Narrations should be handled by the worker");
+    }
+
+    @Test
+    @DisplayName("A full queue drops the newest or oldest narration depending on the drop policy")
+    void testDropPolicies() throws InterruptedException {
+        for (NarrationPipeline.DropPolicy policy : NarrationPipeline.DropPolicy.values()) {
+            List<String> handled = new CopyOnWriteArrayList<>();
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            NarrationPipeline pipeline = new NarrationPipeline("test", narration -> {
+                started.countDown();
+                awaitQuietly(release);
+                handled.add(narration.message().asString());
+            });
+            pipeline.configure(2, policy);
+
+            // the worker holds on to the first narration, so the others pile up in the queue
+            pipeline.submit(narration("busy"));
+            assertTrue(started.await(5, TimeUnit.SECONDS), "Worker should start on the first narration");
+            pipeline.submit(narration("a"));
+            pipeline.submit(narration("b"));
+            boolean accepted = pipeline.submit(narration("c"));
+            release.countDown();
+            while (pipeline.getHandled() < 3) {
+                Thread.onSpinWait();
+            }
+
+            assertEquals(1, pipeline.getDropped(), "One narration should be dropped with " + policy);
+            if (policy == NarrationPipeline.DropPolicy.DROP_NEWEST) {
+                assertFalse(accepted, "The newest narration should be rejected");
+                assertEquals(List.of("busy", "a", "b"), handled, "The newest narration should be dropped");
+            } else {
+                assertTrue(accepted, "The newest narration should be accepted");
+                assertEquals(List.of("busy", "b", "c"), handled, "The oldest queued narration should be dropped");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Without a queue, narrations are handled right away on the submitting thread")
+    void testNoQueue() {
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        NarrationPipeline pipeline = new NarrationPipeline("test", narration -> {
+            threads.add(Thread.currentThread());
+            throw new IllegalStateException("failure");
+        });
+        pipeline.configure(0, NarrationPipeline.DropPolicy.DROP_OLDEST);
+        List<Throwable> logged = new ArrayList<>();
+        pipeline.setFailureLog((message, e) -> logged.add(e));
+
+        assertFalse(pipeline.isQueued(), "Pipeline should not queue");
+        assertTrue(pipeline.submit(narration("now")), "Narration should be accepted");
+        assertEquals(List.of(Thread.currentThread()), threads, "Narration should be handled right away");
+        assertEquals(1, pipeline.getFailed(), "Handler failure should be counted rather than thrown");
+        assertEquals(1, logged.size(), "The first failure should be logged");
+
+        pipeline.submit(narration("again"));
+        pipeline.submit(narration("and again"));
+        assertEquals(3, pipeline.getFailed(), "Every failure should be counted");
+        assertEquals(2, logged.size(), "Only the failures numbered by powers of two should be logged");
+    }
+
+    @Test
+    @DisplayName("A handler throwing an error drops the narration and keeps the worker running")
+    void testHandlerError() throws InterruptedException {
+        List<String> handled = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        NarrationPipeline pipeline = new NarrationPipeline("test", narration -> {
+            String message = narration.message().asString();
+            if (message.equals("deep")) {
+                throw new StackOverflowError();
+            } else if (message.equals("broken")) {
+                throw new AssertionError("failure");
+            }
+            handled.add(message);
+            done.countDown();
+        });
+        pipeline.configure(10, NarrationPipeline.DropPolicy.DROP_NEWEST);
+        List<Throwable> logged = new CopyOnWriteArrayList<>();
+        pipeline.setFailureLog((message, e) -> logged.add(e));
+
+        pipeline.submit(narration("deep"));
+        pipeline.submit(narration("broken"));
+        pipeline.submit(narration("fine"));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS), "The worker should keep handling narrations after errors");
+        assertEquals(List.of("fine"), handled, "The narrations which failed should be dropped");
+        assertEquals(2, pipeline.getFailed(), "Both errors should be counted");
+        assertTrue(logged.get(0) instanceof StackOverflowError, "The stack overflow should be logged");
+    }
+
+    @Test
+    @DisplayName("Drop policies are parsed case-insensitively, falling back on a default (DropPolicy.parse)")
+    void testParseDropPolicy() {
+        assertEquals(NarrationPipeline.DropPolicy.DROP_NEWEST,
+                NarrationPipeline.DropPolicy.parse(" drop_newest ", NarrationPipeline.DropPolicy.DROP_OLDEST));
+        assertEquals(NarrationPipeline.DropPolicy.DROP_OLDEST,
+                NarrationPipeline.DropPolicy.parse("sometimes", NarrationPipeline.DropPolicy.DROP_OLDEST));
+        assertEquals(NarrationPipeline.DropPolicy.DROP_OLDEST,
+                NarrationPipeline.DropPolicy.parse(null, NarrationPipeline.DropPolicy.DROP_OLDEST));
+    }
+
+    private static Narration narration(final String message) {
+        return new Narration(SegmentedText.of(message), false, Narration.Source.GAME);
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.pipeline;
+
+import com.casewalker.narratorconfigs.matcher.SegmentedText;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests on the {@link NarrationScheduler} and the {@link NarrationPriorities} feeding it.
+ *
+ * @author Case Walker
+ */
+class NarrationSchedulerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    @DisplayName("Waiting narrations go by priority, then in arrival order, once the narrator is free (flush)")
+    void testLanes() {
+        List<String> said = new ArrayList<>();
+        NarrationScheduler scheduler = scheduler(said, false);
+
+        // ten characters take a second at ten characters per second
+        scheduler.submit("chat 00000", NarrationScheduler.Priority.NORMAL, false, 0);
+        scheduler.submit("chat 11111", NarrationScheduler.Priority.NORMAL, false, 0);
+        scheduler.submit("low 222222", NarrationScheduler.Priority.LOW, false, 0);
+        scheduler.submit("chat 33333", NarrationScheduler.Priority.NORMAL, false, 0);
+        scheduler.submit("death 4444", NarrationScheduler.Priority.HIGH, false, SECOND / 2);
+        assertEquals(List.of("chat 00000"), said, "Only the first narration should be narrated right away");
+        assertEquals(4, scheduler.getWaiting(), "The rest should wait in their lanes");
+
+        for (int i = 1; i <= 4; i++) {
+            scheduler.flush(i * SECOND);
+        }
+        assertEquals(List.of("chat 00000", "death 4444", "chat 11111", "chat 33333", "low 222222"), said,
+                "The high priority narration should jump the queue, and the low priority one go last");
+        assertEquals(SECOND / 2, scheduler.getMaxWait(NarrationScheduler.Priority.HIGH),
+                "The high priority narration should only have waited for the narration being narrated");
+    }
+
+    @Test
+    @DisplayName("Narrations interrupt speech of a lower priority, or of the same priority when asked to (submit)")
+    void testInterrupt() {
+        List<String> said = new ArrayList<>();
+        NarrationScheduler scheduler = scheduler(said, true);
+
+        scheduler.submit("low 000000", NarrationScheduler.Priority.LOW, false, 0);
+        scheduler.submit("death 1111", NarrationScheduler.Priority.HIGH, false, 0);
+        scheduler.submit("chat 22222", NarrationScheduler.Priority.NORMAL, false, 0);
+        scheduler.submit("screen 333", NarrationScheduler.Priority.NORMAL, true, 0);
+        scheduler.submit("screen 444", NarrationScheduler.Priority.HIGH, true, 0);
+        assertEquals(List.of("low 000000", "death 1111!", "screen 444!"), said,
+                "Only narrations of at least the priority being narrated should interrupt");
+        assertEquals(2, scheduler.getInterrupted(), "Both interruptions should be counted");
+
+        scheduler.configure(10, NarrationScheduler.DEFAULT_LANE_CAPACITY, false);
+        scheduler.submit("death 5555", NarrationScheduler.Priority.HIGH, false, 2 * SECOND);
+        scheduler.submit("death 6666", NarrationScheduler.Priority.HIGH, false, 2 * SECOND);
+        scheduler.submit("chat 77777", NarrationScheduler.Priority.NORMAL, false, 2 * SECOND);
+        scheduler.flush(3 * SECOND);
+        scheduler.flush(4 * SECOND);
+        assertEquals(List.of("chat 22222", "death 5555", "death 6666"), said.subList(3, said.size()),
+                "Without interruptions, high priority narrations should wait for the narration being narrated");
+    }
+
+    @Test
+    @DisplayName("Full lanes drop their oldest narration, and no speech rate turns the lanes off (configure)")
+    void testCapacity() {
+        List<String> said = new ArrayList<>();
+        NarrationScheduler scheduler = scheduler(said, false);
+        scheduler.configure(10, 2, true);
+
+        for (int i = 0; i < 5; i++) {
+            scheduler.submit("chat " + i, NarrationScheduler.Priority.NORMAL, false, 0);
+        }
+        assertEquals(2, scheduler.getWaiting(), "The lane should hold at most its capacity");
+        assertEquals(2, scheduler.getDropped(), "The oldest waiting narrations should be dropped");
+
+        scheduler.configure(0, 2, true);
+        assertEquals(List.of("chat 0", "chat 3", "chat 4"), said, "Waiting narrations should be narrated right away");
+        scheduler.submit("chat 5", NarrationScheduler.Priority.LOW, false, 0);
+        assertEquals("chat 5", said.get(3), "Without lanes, narrations should be narrated right away");
+    }
+
+    @Test
+    @DisplayName("Until configured, narrations go straight to the narrator in arrival order (submit)")
+    void testPassThrough() {
+        List<String> said = new ArrayList<>();
+        NarrationScheduler scheduler = new NarrationScheduler((message, interrupt) -> said.add(message), false);
+
+        scheduler.submit("chat 00000", NarrationScheduler.Priority.NORMAL, false, 0);
+        scheduler.submit("low 111111", NarrationScheduler.Priority.LOW, false, 0);
+        scheduler.submit("death 2222", NarrationScheduler.Priority.HIGH, false, 0);
+        assertEquals(List.of("chat 00000", "low 111111", "death 2222"), said,
+                "Every narration should be narrated right away");
+        assertEquals(0, scheduler.getWaiting(), "Nothing should wait in the lanes");
+    }
+
+    @Test
+    @DisplayName("Priorities come from prefixes for translations and from regular expressions (NarrationPriorities)")
+    void testPriorities() {
+        Map<String, String> translations = Map.of(
+                "death.attack.player", "%s was slain by %s", "chat.type.text", "<%s> %s", "death.fell", "%s fell");
+        NarrationPriorities priorities = NarrationPriorities.build(translations, List.of("death."),
+                List.of(".* whispers to you: .*"), List.of("chat.type."), List.of());
+
+        assertEquals(NarrationScheduler.Priority.HIGH, priorities.of(narration("death.fell", "Steve fell")),
+                "Translations under a high priority prefix should be found by key");
+        assertEquals(NarrationScheduler.Priority.HIGH, priorities.of(narration(null, "Steve was slain by Alex")),
+                "Other narrations should be matched against the translations under the prefixes");
+        assertEquals(NarrationScheduler.Priority.HIGH, priorities.of(narration(null, "Alex whispers to you: hi")),
+                "Narrations matching a high priority regular expression should be high priority");
+        assertEquals(NarrationScheduler.Priority.LOW, priorities.of(narration("chat.type.text", "<Alex> hello")));
+        assertEquals(NarrationScheduler.Priority.NORMAL, priorities.of(narration(null, "Hello")));
+        assertEquals(NarrationScheduler.Priority.NORMAL, NarrationPriorities.NONE.of(narration("death.fell", "")));
+        assertEquals(NarrationPriorities.NONE,
+                NarrationPriorities.build(translations, List.of(), List.of(), List.of(), List.of()),
+                "Nothing configured should give every narration normal priority");
+        assertThrows(RuntimeException.class,
+                () -> NarrationPriorities.build(translations, List.of(), List.of("("), List.of(), List.of()),
+                "Invalid regular expressions should fail");
+    }
+
+    private static Narration narration(String key, String message) {
+        return new Narration(SegmentedText.of(message), false, Narration.Source.GAME, key);
+    }
+
+    /**
+     * @return A scheduler at ten characters per second, recording interrupting narrations with a trailing "!"
+     */
+    private static NarrationScheduler scheduler(List<String> said, boolean interruptLowerPriority) {
+        NarrationScheduler scheduler = new NarrationScheduler(
+                (message, interrupt) -> said.add(interrupt ? message + "!" : message), false);
+        scheduler.configure(10, NarrationScheduler.DEFAULT_LANE_CAPACITY, interruptLowerPriority);
+        return scheduler;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2022 Case Walker.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.casewalker.narratorconfigs.replay;
+
+import com.casewalker.narratorconfigs.matcher.NarrationMatcher;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests on the {@link ChatLogReplay}.
+ *
+ * @author Case Walker
+ */
+class ChatLogReplayTest {
+
+    private static final String LOG = """
+            [12:00:00] [Render thread/INFO]: Loaded 7 advancements
+            [12:00:01] [Render thread/INFO]: [CHAT] Steve joined the game
+            [12:00:02] [Render thread/INFO]: [CHAT] <Steve> hello
+            [12:00:03] [Render thread/INFO]: [CHAT] §eAlex joined the game
+            [12:00:04] [Render thread/INFO]: [CHAT] Steve was slain by Zombie
+            [12:00:05] [Render thread/INFO]: [CHAT] 42
+            """;
+
+    @Test
+    @DisplayName("Only chat lines are messages, without their formatting codes (extractMessage)")
+    void testExtractMessage() {
+        assertEquals("Steve joined the game",
+                ChatLogReplay.extractMessage("[12:00:01] [Render thread/INFO]: [CHAT] §eSteve joined the game", false),
+                "Chat line should be extracted without formatting codes");
+        assertNull(ChatLogReplay.extractMessage("[12:00:00] [Render thread/INFO]: Loaded 7 advancements", false),
+                "Other lines should be skipped");
+        assertEquals("Loaded 7 advancements", ChatLogReplay.extractMessage("Loaded 7 advancements", true),
+                "Raw lines should be messages by themselves");
+    }
+
+    @Test
+    @DisplayName("Replayed messages are narrated and counted per pattern")
+    void testReplay() throws IOException {
+        NarrationMatcher matcher = new NarrationMatcher(
+                Map.of("multiplayer.player.joined", "%s joined the game"), List.of("^\\d+$"));
+        ChatLogReplay replay = new ChatLogReplay(matcher, true);
+
+        replay.replay(new BufferedReader(new StringReader(LOG)), false);
+
+        assertEquals(5, replay.getMessages(), "Every chat line should be replayed");
+        assertEquals(List.of("Steve joined the game", "<Steve> hello", "Alex joined the game", "42"),
+                replay.getNarrated(), "Accepted messages and player chat should be narrated");
+        assertEquals(Map.of("multiplayer.player.joined", 2L, "(chat)", 1L, "^\\d+$", 1L), replay.getHits(),
+                "Hits should be counted per translation key and regular expression");
+    }
+
+    @Test
+    @DisplayName("Player chat is not narrated when chat is disabled")
+    void testChatDisabled() {
+        ChatLogReplay replay = new ChatLogReplay(NarrationMatcher.EMPTY, false);
+
+        replay.replay("<Steve> hello");
+
+        assertEquals(List.of(), replay.getNarrated(), "Player chat should not be narrated");
+    }
+}
@@ -23,6 +23,9 @@
  */
 package com.casewalker.narratorconfigs.testutils;
 
+import com.casewalker.modutils.config.ConfigHandler;
+import com.casewalker.narratorconfigs.config.NarratorConfigsModConfig;
+import com.casewalker.narratorconfigs.matcher.NarrationMatcher;
 import com.casewalker.narratorconfigs.mixin.NarratorManagerMixinNCM2;
 import com.mojang.text2speech.Narrator;
 import net.minecraft.util.Pair;
@@ -30,6 +33,7 @@ import org.powermock.reflect.Whitebox;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Utilities shared between tests for this mod.
@@ -44,6 +48,10 @@ public class TestUtils {
     public static class NarratorManagerMixinTestImpl extends NarratorManagerMixinNCM2 {
         protected void debugPrintMessage(String var1) {}
         public void setNarrator(Narrator narrator) { Whitebox.setInternalState(this, "narrator", narrator); }
+        public void setAcceptedNarrations(NarrationMatcher matcher) {
+            ConfigHandler<NarratorConfigsModConfig> config = Whitebox.getInternalState(this, "config");
+            publishFilter(config.get(), "", Map.of(), matcher);
+        }
         public boolean narratorModeIsCustom = false;
         @Override
         protected boolean narratorModeIsCustomNarration() { return narratorModeIsCustom; }